@@ -0,0 +1,124 @@
+package com.citystream.api;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One 5-minute window as returned by /aggregations, with per-severity counters
+ */
+@JsonSerialize(using = AggregationView.Serializer.class)
+public final class AggregationView {
+
+    // Severity levels in ascending order, matching the consumer's aggregation counters
+    static final List<String> SEVERITY_LEVELS = List.of("low", "medium", "high", "critical");
+
+    public final String partitionKey;
+    public final String windowStart;
+    public final String windowEnd;
+    public final String city;
+    public final String eventType;
+    public final long eventCount;
+    public final long[] severityCounts;
+    public final long severityScore;
+    public final String maxSeverity;
+    public final String lastUpdated;
+
+    // Sort key; not part of the response
+    public final long windowStartMs;
+
+    public AggregationView(String partitionKey, String windowStart, String windowEnd, String city,
+                           String eventType, long eventCount, long[] severityCounts, long severityScore,
+                           String lastUpdated) {
+        this.partitionKey = partitionKey;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.city = city;
+        this.eventType = eventType;
+        this.eventCount = eventCount;
+        this.severityCounts = severityCounts;
+        this.severityScore = severityScore;
+        this.lastUpdated = lastUpdated;
+        this.windowStartMs = Views.epochMillis(windowStart);
+
+        String max = null;
+        for (int i = 0; i < severityCounts.length; i++) {
+            if (severityCounts[i] > 0) {
+                max = SEVERITY_LEVELS.get(i);
+            }
+        }
+        this.maxSeverity = max;
+    }
+
+    /**
+     * Items written before the counters existed carry a "severities" list instead
+     */
+    static AggregationView fromItem(Map<String, AttributeValue> item) {
+        long[] counts = new long[SEVERITY_LEVELS.size()];
+        if (item.containsKey("low_count")) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = Views.number(item, SEVERITY_LEVELS.get(i) + "_count");
+            }
+        } else if (item.containsKey("severities") && item.get("severities").getL() != null) {
+            for (AttributeValue severity : item.get("severities").getL()) {
+                int index = SEVERITY_LEVELS.indexOf(severity.getS());
+                if (index >= 0) {
+                    counts[index]++;
+                }
+            }
+        }
+
+        long severityScore;
+        if (item.containsKey("severity_score")) {
+            severityScore = Views.number(item, "severity_score");
+        } else {
+            severityScore = 0;
+            for (int i = 0; i < counts.length; i++) {
+                severityScore += counts[i] * (i + 1);
+            }
+        }
+
+        return new AggregationView(
+            Views.string(item, "partition_key"),
+            Views.string(item, "window_start"),
+            Views.string(item, "window_end"),
+            Views.string(item, "city"),
+            Views.string(item, "event_type"),
+            Views.number(item, "event_count"),
+            counts,
+            severityScore,
+            Views.string(item, "last_updated"));
+    }
+
+    static final class Serializer extends StdSerializer<AggregationView> {
+
+        Serializer() {
+            super(AggregationView.class);
+        }
+
+        @Override
+        public void serialize(AggregationView window, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            Views.writeString(gen, "partition_key", window.partitionKey);
+            Views.writeString(gen, "window_start", window.windowStart);
+            Views.writeString(gen, "window_end", window.windowEnd);
+            Views.writeString(gen, "city", window.city);
+            Views.writeString(gen, "event_type", window.eventType);
+            gen.writeNumberField("event_count", window.eventCount);
+            for (int i = 0; i < window.severityCounts.length; i++) {
+                gen.writeNumberField(SEVERITY_LEVELS.get(i) + "_count", window.severityCounts[i]);
+            }
+            gen.writeNumberField("severity_score", window.severityScore);
+            gen.writeStringField("max_severity", window.maxSeverity);
+            Views.writeString(gen, "last_updated", window.lastUpdated);
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.citystream.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans high/critical events from the shared Kafka tail out to Server-Sent
+ * Events subscribers.
+ *
+ * The poll thread only offers each alert to every subscriber's bounded queue;
+ * a small sender pool drains the queues onto the connections. A subscriber
+ * whose queue is full is too slow to keep up and is disconnected, so one slow
+ * client never holds back the others or the Kafka tail.
+ *
+ * SseEmitter is not safe for concurrent sends, so the drain, the heartbeat
+ * and the greeting all write through send(), which locks the subscriber, and
+ * completing a dropped subscriber takes the same lock.
+ * Alerts produced while the tail reconnects are still delivered, since the
+ * tail resumes from the offsets it last consumed.
+ */
+@Component
+public class AlertStream implements CityEventsTail.Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertStream.class);
+
+    private static final Set<String> ALERT_SEVERITIES = Set.of("high", "critical");
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+    private final int queueSize;
+    private final Duration timeout;
+
+    private final Counter delivered;
+    private final Counter droppedSubscribers;
+    private final Timer latency;
+
+    public AlertStream(CityEventsTail tail, MeterRegistry meterRegistry,
+                       @Value("${citystream.alert-stream.queue-size:256}") int queueSize,
+                       @Value("${citystream.alert-stream.sender-threads:4}") int senderThreads,
+                       @Value("${citystream.alert-stream.timeout:30m}") Duration timeout) {
+        this.queueSize = queueSize;
+        this.timeout = timeout;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "alert-stream-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("citystream.api.alert.stream.subscribers", subscribers, Set::size)
+            .description("Connected alert stream subscribers")
+            .register(meterRegistry);
+        this.delivered = Counter.builder("citystream.api.alert.stream.delivered")
+            .description("Alerts sent to subscribers")
+            .register(meterRegistry);
+        this.droppedSubscribers = Counter.builder("citystream.api.alert.stream.dropped")
+            .description("Subscribers disconnected because their queue was full")
+            .register(meterRegistry);
+        this.latency = Timer.builder("citystream.api.alert.stream.latency")
+            .description("Kafka record timestamp to SSE send")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+
+        tail.addListener(this);
+    }
+
+    /**
+     * Register a new subscriber, optionally limited to one city
+     */
+    public SseEmitter subscribe(String city) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, city, queueSize);
+        subscribers.add(subscriber);
+
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+
+        // Commits the response headers so clients see the stream open before the first alert
+        try {
+            send(subscriber, SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            subscribers.remove(subscriber);
+            emitter.completeWithError(e);
+        }
+
+        logger.info("Alert stream subscriber connected (city={}), {} connected", city, subscribers.size());
+        return emitter;
+    }
+
+    @Override
+    public void onEvent(Map<String, Object> event, long recordTimestampMs) {
+        if (!ALERT_SEVERITIES.contains(event.get("severity"))) {
+            return;
+        }
+        Alert alert = new Alert(AlertView.fromEvent(EventView.fromEvent(event)), recordTimestampMs);
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.city != null && !subscriber.city.equals(alert.event.city)) {
+                continue;
+            }
+            if (!subscriber.queue.offer(alert)) {
+                drop(subscriber);
+                continue;
+            }
+            scheduleDrain(subscriber);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${citystream.alert-stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            senders.execute(() -> {
+                try {
+                    send(subscriber, SseEmitter.event().comment("keep-alive"));
+                } catch (IOException | IllegalStateException e) {
+                    subscribers.remove(subscriber);
+                }
+            });
+        }
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Alert alert;
+            while ((alert = subscriber.queue.poll()) != null) {
+                send(subscriber, SseEmitter.event()
+                    .name("alert")
+                    .id(alert.event.eventId)
+                    .data(alert.event));
+                delivered.increment();
+                latency.record(System.currentTimeMillis() - alert.recordTimestampMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the emitter callbacks may not fire for a broken pipe
+            subscribers.remove(subscriber);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // An alert may have been queued after the last poll but before draining was cleared
+        if (!subscriber.queue.isEmpty()) {
+            scheduleDrain(subscriber);
+        }
+    }
+
+    private static void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) throws IOException {
+        synchronized (subscriber) {
+            subscriber.emitter.send(event);
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            droppedSubscribers.increment();
+            logger.warn("Dropping slow alert stream subscriber (city={}): {} alerts queued",
+                subscriber.city, queueSize);
+            senders.execute(() -> {
+                synchronized (subscriber) {
+                    subscriber.emitter.complete();
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    private static final class Alert {
+        final AlertView event;
+        final long recordTimestampMs;
+
+        Alert(AlertView event, long recordTimestampMs) {
+            this.event = event;
+            this.recordTimestampMs = recordTimestampMs;
+        }
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final String city;
+        final BlockingQueue<Alert> queue;
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, String city, int queueSize) {
+            this.emitter = emitter;
+            this.city = city;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+}
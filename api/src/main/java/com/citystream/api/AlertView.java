@@ -0,0 +1,76 @@
+package com.citystream.api;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A high/critical alert as returned by /alerts and /alerts/stream
+ */
+@JsonSerialize(using = AlertView.Serializer.class)
+public final class AlertView {
+
+    public final String eventId;
+    public final String city;
+    public final String eventType;
+    public final String severity;
+    public final String timestamp;
+    public final String description;
+    public final String processingTime;
+
+    // Sort key; not part of the response
+    public final long timestampMs;
+
+    public AlertView(String eventId, String city, String eventType, String severity, String timestamp,
+                     String description, String processingTime) {
+        this.eventId = eventId;
+        this.city = city;
+        this.eventType = eventType;
+        this.severity = severity;
+        this.timestamp = timestamp;
+        this.description = description;
+        this.processingTime = processingTime;
+        this.timestampMs = Views.epochMillis(timestamp);
+    }
+
+    static AlertView fromItem(Map<String, AttributeValue> item) {
+        return new AlertView(
+            Views.string(item, "event_id"),
+            Views.string(item, "city"),
+            Views.string(item, "event_type"),
+            Views.string(item, "severity"),
+            Views.string(item, "timestamp"),
+            Views.string(item, "description"),
+            Views.string(item, "processing_time"));
+    }
+
+    static AlertView fromEvent(EventView event) {
+        return new AlertView(event.eventId, event.city, event.eventType, event.severity,
+            event.timestamp, event.description, event.processingTime);
+    }
+
+    static final class Serializer extends StdSerializer<AlertView> {
+
+        Serializer() {
+            super(AlertView.class);
+        }
+
+        @Override
+        public void serialize(AlertView alert, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            Views.writeString(gen, "event_id", alert.eventId);
+            Views.writeString(gen, "city", alert.city);
+            Views.writeString(gen, "event_type", alert.eventType);
+            Views.writeString(gen, "severity", alert.severity);
+            Views.writeString(gen, "timestamp", alert.timestamp);
+            Views.writeString(gen, "description", alert.description);
+            Views.writeString(gen, "processing_time", alert.processingTime);
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.citystream.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Single shared Kafka consumer that tails the city-events topic for the API.
+ *
+ * Partitions are assigned directly (no consumer group, no offset commits) and
+ * consumption starts at the end of the log, so every API instance sees every
+ * new event. Each record is parsed once and handed to all registered
+ * listeners on the poll thread; listeners must not block.
+ *
+ * The next offset of every partition is kept in memory, so after a failure the
+ * new consumer resumes where the old one stopped instead of skipping what was
+ * produced meanwhile. If those offsets have already been deleted by retention
+ * the tail jumps to the end and listeners are told through onGap().
+ */
+@Component
+public class CityEventsTail {
+
+    private static final Logger logger = LoggerFactory.getLogger(CityEventsTail.class);
+
+    private static final TypeReference<Map<String, Object>> EVENT_TYPE = new TypeReference<>() {};
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final long RETRY_BACKOFF_MS = 5000;
+
+    /**
+     * Receives every parsed event along with its Kafka record timestamp
+     */
+    public interface Listener {
+        void onEvent(Map<String, Object> event, long recordTimestampMs);
+
+        /**
+         * Called on the poll thread when events were skipped and will not be delivered
+         */
+        default void onGap() {
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Value("${citystream.kafka.enabled:true}")
+    private boolean enabled;
+
+    @Value("${citystream.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${citystream.kafka.topic:city-events}")
+    private String topic;
+
+    // Next offset to read per partition; only touched by the poll thread
+    private final Map<TopicPartition, Long> positions = new HashMap<>();
+
+    private volatile KafkaConsumer<byte[], byte[]> consumer;
+    private volatile boolean running;
+    private Thread pollThread;
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || listeners.isEmpty() || running) {
+            return;
+        }
+        running = true;
+        pollThread = new Thread(this::run, "city-events-tail");
+        pollThread.setDaemon(true);
+        pollThread.start();
+        logger.info("Tailing topic {} on {} for {} listeners", topic, bootstrapServers, listeners.size());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        KafkaConsumer<byte[], byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try (KafkaConsumer<byte[], byte[]> kafkaConsumer = new KafkaConsumer<>(consumerProperties())) {
+                consumer = kafkaConsumer;
+                List<TopicPartition> partitions = assign(kafkaConsumer);
+                if (partitions.isEmpty()) {
+                    logger.warn("Topic {} has no partitions yet, retrying in {} ms", topic, RETRY_BACKOFF_MS);
+                    sleepBeforeRetry();
+                    continue;
+                }
+                logger.info("Assigned {} partitions of {}", partitions.size(), topic);
+
+                while (running) {
+                    try {
+                        for (ConsumerRecord<byte[], byte[]> record : kafkaConsumer.poll(POLL_TIMEOUT)) {
+                            dispatch(record);
+                            positions.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+                        }
+                    } catch (OffsetOutOfRangeException e) {
+                        skipToEnd(kafkaConsumer, e.partitions());
+                    }
+                }
+            } catch (WakeupException e) {
+                // stop() was called
+            } catch (Exception e) {
+                logger.warn("Kafka tail of {} failed, reconnecting in {} ms: {}",
+                    topic, RETRY_BACKOFF_MS, e.getMessage());
+                sleepBeforeRetry();
+            } finally {
+                consumer = null;
+            }
+        }
+        logger.info("Stopped tailing topic {}", topic);
+    }
+
+    /**
+     * Assign every partition, resuming from the saved positions; partitions
+     * seen for the first time start at their current end
+     */
+    private List<TopicPartition> assign(KafkaConsumer<byte[], byte[]> kafkaConsumer) {
+        List<PartitionInfo> infos = kafkaConsumer.partitionsFor(topic);
+        if (infos == null || infos.isEmpty()) {
+            return List.of();
+        }
+        List<TopicPartition> partitions = infos.stream()
+            .map(info -> new TopicPartition(info.topic(), info.partition()))
+            .collect(Collectors.toList());
+        kafkaConsumer.assign(partitions);
+        List<TopicPartition> unseen = new ArrayList<>();
+        for (TopicPartition partition : partitions) {
+            Long position = positions.get(partition);
+            if (position == null) {
+                unseen.add(partition);
+            } else {
+                kafkaConsumer.seek(partition, position);
+            }
+        }
+        kafkaConsumer.seekToEnd(unseen);
+        unseen.forEach(partition -> positions.put(partition, kafkaConsumer.position(partition)));
+        return partitions;
+    }
+
+    /**
+     * The saved offsets are gone, so the records in between can no longer be read
+     */
+    private void skipToEnd(KafkaConsumer<byte[], byte[]> kafkaConsumer, Set<TopicPartition> partitions) {
+        logger.warn("Offsets of {} are out of range, skipping to the end", partitions);
+        kafkaConsumer.seekToEnd(partitions);
+        partitions.forEach(partition -> positions.put(partition, kafkaConsumer.position(partition)));
+        for (Listener listener : listeners) {
+            try {
+                listener.onGap();
+            } catch (RuntimeException e) {
+                logger.warn("City events listener failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void dispatch(ConsumerRecord<byte[], byte[]> record) {
+        Map<String, Object> event;
+        try {
+            event = objectMapper.readValue(record.value(), EVENT_TYPE);
+        } catch (IOException e) {
+            logger.debug("Skipping unparseable record at {}-{}@{}", record.topic(), record.partition(), record.offset());
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvent(event, record.timestamp());
+            } catch (RuntimeException e) {
+                logger.warn("City events listener failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private Properties consumerProperties() {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        // Surface a lost position as OffsetOutOfRangeException instead of silently resetting
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "none");
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, "citystream-api-tail");
+        return props;
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
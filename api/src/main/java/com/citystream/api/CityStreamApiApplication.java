@@ -1,45 +1,170 @@
 package com.citystream.api;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.document.*;
+import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
-import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
-import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.Select;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 @SpringBootApplication
+@EnableScheduling
 @RestController
 @RequestMapping("/api/v1")
 public class CityStreamApiApplication {
 
+    private static final List<String> SEVERITY_LEVELS = AggregationView.SEVERITY_LEVELS;
+
+    private static final String RAW_EVENTS_TABLE = "citystream-raw-events";
+    private static final String RAW_EVENTS_BY_CITY_INDEX = "city-timestamp-index";
+    private static final String AGGREGATIONS_TABLE = "citystream-aggregations";
+    private static final String AGGREGATIONS_BY_CITY_INDEX = "city-window-index";
+    private static final String ALERTS_TABLE = "citystream-alerts";
+    private static final String ALERTS_BY_SEVERITY_INDEX = "severity-timestamp-index";
+
+    // Key attributes of each table or index read page by page, including the table
+    // key of index items, so a page can end after any item
+    private static final List<String> RAW_EVENTS_BY_CITY_KEY = List.of("city", "timestamp", "event_id");
+    private static final List<String> AGGREGATIONS_BY_CITY_KEY = List.of("city", "window_start", "partition_key");
+    private static final List<String> ALERTS_KEY = List.of("city", "timestamp");
+    private static final List<String> ALERTS_BY_SEVERITY_KEY = List.of("severity", "timestamp", "city");
+
+    // Alerts without a city are read one severity at a time from severity-timestamp-index
+    private static final List<String> ALERT_SEVERITIES = List.of("critical", "high");
+
+    // Newest first, on the epoch millis decoded once per item
+    private static final Comparator<EventView> NEWEST_EVENT_FIRST =
+        Comparator.comparingLong((EventView event) -> event.timestampMs).reversed();
+    private static final Comparator<AlertView> NEWEST_ALERT_FIRST =
+        Comparator.comparingLong((AlertView alert) -> alert.timestampMs).reversed();
+    private static final Comparator<AggregationView> NEWEST_WINDOW_FIRST =
+        Comparator.comparingLong((AggregationView window) -> window.windowStartMs).reversed();
+
+    // List endpoints read the low-level client directly; the document API is
+    // kept for the small cached lookups
+    private final AmazonDynamoDB client;
     private final DynamoDB dynamoDB;
-    private final Table rawEventsTable;
-    private final Table aggregationsTable;
-    private final Table alertsTable;
+    private final Table cityTotalsTable;
+    private final Index cityTotalsByScopeIndex;
+    private final Index alertsBySeverityIndex;
+
+    // Scopes of the running totals items written by the consumer
+    private static final String CITY_TOTAL_SCOPE = "TOTAL";
+    private static final String EVENT_TYPE_SCOPE_PREFIX = "TYPE#";
+    private static final String GLOBAL_TOTALS = "#GLOBAL";
+    private static final String GLOBAL_SCOPE = "GLOBAL";
+    private static final String MINUTE_SCOPE_PREFIX = "MINUTE#";
+    private static final DateTimeFormatter MINUTE_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm").withZone(ZoneOffset.UTC);
+
+    // Cache key for endpoints without parameters
+    private static final String ALL = "all";
+    private static final int BATCH_GET_LIMIT = 100;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private ParallelScanner parallelScanner;
+
+    @Autowired
+    private QueryPager queryPager;
+
+    @Autowired
+    private AlertStream alertStream;
 
-    public CityStreamApiApplication() {
+    @Autowired
+    private MaterializedView materializedView;
+
+    @Autowired
+    private DynamoDBExecutor dynamoDBExecutor;
+
+    @Value("${citystream.cache.summary.ttl:30s}")
+    private Duration summaryTtl;
+
+    @Value("${citystream.cache.summary.refresh-after:10s}")
+    private Duration summaryRefreshAfter;
+
+    @Value("${citystream.cache.cities.ttl:60s}")
+    private Duration citiesTtl;
+
+    @Value("${citystream.cache.cities.refresh-after:20s}")
+    private Duration citiesRefreshAfter;
+
+    @Value("${citystream.cache.stats.ttl:30s}")
+    private Duration statsTtl;
+
+    @Value("${citystream.cache.stats.refresh-after:10s}")
+    private Duration statsRefreshAfter;
+
+    private ResponseCache.RefreshingCache<String, Map<String, Object>> summaryCache;
+    private ResponseCache.RefreshingCache<String, Map<String, Object>> citiesCache;
+    private ResponseCache.RefreshingCache<String, Map<String, Object>> statsCache;
+
+    public CityStreamApiApplication(AmazonDynamoDB client) {
+        this.client = client;
+        this.dynamoDB = new DynamoDB(client);
+        this.cityTotalsTable = dynamoDB.getTable("citystream-city-totals");
+        this.cityTotalsByScopeIndex = cityTotalsTable.getIndex("scope-city-index");
+        this.alertsBySeverityIndex = dynamoDB.getTable(ALERTS_TABLE).getIndex(ALERTS_BY_SEVERITY_INDEX);
+    }
+
+    @Bean
+    public static AmazonDynamoDB amazonDynamoDB() {
         String region = System.getenv().getOrDefault("AWS_REGION", "us-east-1");
-        AmazonDynamoDB client = AmazonDynamoDBClientBuilder.standard()
-            .withRegion(region)
-            .withCredentials(new DefaultAWSCredentialsProviderChain())
-            .build();
+        // Optional endpoint override (e.g. DynamoDB Local)
+        String endpoint = System.getenv().getOrDefault("DYNAMODB_ENDPOINT", "");
+        // Sized for the DynamoDB executor plus the parallel scan threads
+        int maxConnections = Integer.parseInt(System.getenv().getOrDefault("DYNAMODB_MAX_CONNECTIONS", "100"));
         
-        this.dynamoDB = new DynamoDB(client);
-        this.rawEventsTable = dynamoDB.getTable("citystream-raw-events");
-        this.aggregationsTable = dynamoDB.getTable("citystream-aggregations");
-        this.alertsTable = dynamoDB.getTable("citystream-alerts");
+        AmazonDynamoDBClientBuilder builder = AmazonDynamoDBClientBuilder.standard()
+            .withCredentials(new DefaultAWSCredentialsProviderChain())
+            .withClientConfiguration(new ClientConfiguration().withMaxConnections(maxConnections));
+        if (endpoint.isEmpty()) {
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+        }
+        return builder.build();
+    }
+
+    @PostConstruct
+    void initCaches() {
+        summaryCache = responseCache.create("api.summary", summaryTtl, summaryRefreshAfter, this::loadSummary,
+            this::cityTotalsLastUpdated);
+        citiesCache = responseCache.create("api.cities", citiesTtl, citiesRefreshAfter, this::loadCities,
+            this::globalLastUpdated);
+        statsCache = responseCache.create("api.stats", statsTtl, statsRefreshAfter, this::loadStats,
+            this::globalLastUpdated);
     }
 
     public static void main(String[] args) {
@@ -59,42 +184,74 @@ public class CityStreamApiApplication {
     }
 
     /**
-     * Get recent events for a specific city
-     * GET /api/v1/events/{city}?limit=20
+     * Get recent events for a specific city, newest first
+     * GET /api/v1/events/{city}?limit=20&cursor=...
      */
     @GetMapping("/events/{city}")
-    public ResponseEntity<Map<String, Object>> getEventsByCity(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getEventsByCity(
             @PathVariable String city,
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+        int pageSize = queryPager.clampLimit(limit);
+        return dynamoDBExecutor.submit(() -> {
         
-        try {
-            // Scan with filter (not ideal for production, but works for demo)
-            ScanSpec scanSpec = new ScanSpec()
-                .withFilterExpression("city = :city")
-                .withValueMap(new ValueMap().withString(":city", city))
-                .withMaxResultSize(limit);
-            
-            ItemCollection<ScanOutcome> items = rawEventsTable.scan(scanSpec);
-            
-            List<Map<String, Object>> events = StreamSupport
-                .stream(items.spliterator(), false)
-                .limit(limit)
-                .map(this::itemToMap)
-                .sorted((a, b) -> 
-                    ((String)b.get("timestamp")).compareTo((String)a.get("timestamp")))
-                .collect(Collectors.toList());
+            try {
+                // First page from the in-memory view when it holds enough events
+                if (cursor == null || cursor.isEmpty()) {
+                    Optional<List<EventView>> cached = materializedView.recentEvents(city, pageSize);
+                    if (cached.isPresent()) {
+                        return ResponseEntity.ok(eventsFromView(city, cached.get()));
+                    }
+                }
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("city", city);
-            response.put("count", events.size());
-            response.put("events", events);
+                // Query the city-timestamp index descending, continuing from the cursor
+                QueryRequest request = new QueryRequest(RAW_EVENTS_TABLE)
+                    .withIndexName(RAW_EVENTS_BY_CITY_INDEX)
+                    .withKeyConditionExpression("city = :city")
+                    .withExpressionAttributeValues(Map.of(":city", new AttributeValue(city)))
+                    .withScanIndexForward(false);
+            
+                QueryPager.Result<EventView> page = queryPager.query(request, startKey(cursor),
+                    RAW_EVENTS_BY_CITY_KEY, EventView::fromItem, pageSize);
+            
+                Map<String, Object> response = new HashMap<>();
+                response.put("city", city);
+                response.put("count", page.items.size());
+                response.put("events", page.items);
+                if (page.hasMore()) {
+                    response.put("next_cursor", Cursors.encode(page.nextKey));
+                }
             
-            return ResponseEntity.ok(response);
+                return ResponseEntity.ok(response);
             
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                .body(Map.of("error", e.getMessage()));
-        }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Events page served by the materialized view; the cursor continues in DynamoDB
+     * after the last returned event
+     */
+    private Map<String, Object> eventsFromView(String city, List<EventView> events) {
+        EventView last = events.get(events.size() - 1);
+        Map<String, AttributeValue> lastKey = new HashMap<>();
+        lastKey.put("city", new AttributeValue(city));
+        lastKey.put("timestamp", new AttributeValue(last.timestamp));
+        lastKey.put("event_id", new AttributeValue(last.eventId));
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("city", city);
+        response.put("count", events.size());
+        response.put("events", events);
+        response.put("next_cursor", Cursors.encode(lastKey));
+        response.put("source", "memory");
+        return response;
     }
 
     /**
@@ -102,101 +259,235 @@ public class CityStreamApiApplication {
      * GET /api/v1/summary/{city}
      */
     @GetMapping("/summary/{city}")
-    public ResponseEntity<Map<String, Object>> getSummary(@PathVariable String city) {
-        try {
-            // Scan aggregations table for this city
-            ScanSpec scanSpec = new ScanSpec()
-                .withFilterExpression("city = :city")
-                .withValueMap(new ValueMap().withString(":city", city));
-            
-            ItemCollection<ScanOutcome> items = aggregationsTable.scan(scanSpec);
-            
-            Map<String, Integer> eventTypeCounts = new HashMap<>();
-            int totalEvents = 0;
-            
-            for (Item item : items) {
-                String eventType = item.getString("event_type");
-                int count = item.getInt("event_count");
-                eventTypeCounts.put(eventType, 
-                    eventTypeCounts.getOrDefault(eventType, 0) + count);
-                totalEvents += count;
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getSummary(@PathVariable String city) {
+        return dynamoDBExecutor.submit(() -> {
+            try {
+                return ResponseEntity.ok(summaryCache.get(city));
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                    .body(Map.of("error", rootMessage(e)));
+            }
+        });
+    }
+
+    private Map<String, Object> loadSummary(String city) {
+        // One partition of the running totals table: the city total plus one item per event type
+        QuerySpec querySpec = new QuerySpec()
+            .withHashKey("city", city);
+        
+        Map<String, Long> eventTypeCounts = new HashMap<>();
+        Map<String, Long> severityCounts = new LinkedHashMap<>();
+        SEVERITY_LEVELS.forEach(level -> severityCounts.put(level, 0L));
+        long totalEvents = 0;
+        long severityScore = 0;
+        
+        for (Item item : cityTotalsTable.query(querySpec)) {
+            String scope = item.getString("scope");
+            if (scope.startsWith(EVENT_TYPE_SCOPE_PREFIX)) {
+                eventTypeCounts.put(scope.substring(EVENT_TYPE_SCOPE_PREFIX.length()), 
+                    item.getLong("event_count"));
+            } else if (CITY_TOTAL_SCOPE.equals(scope)) {
+                totalEvents = item.getLong("event_count");
+                severityCounts.putAll(severityCounts(item));
+                severityScore = severityScore(item);
             }
-            
-            Map<String, Object> summary = new HashMap<>();
-            summary.put("city", city);
-            summary.put("total_events", totalEvents);
-            summary.put("event_type_breakdown", eventTypeCounts);
-            summary.put("generated_at", Instant.now().toString());
-            
-            return ResponseEntity.ok(summary);
-            
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                .body(Map.of("error", e.getMessage()));
         }
+        
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("city", city);
+        summary.put("total_events", totalEvents);
+        summary.put("event_type_breakdown", eventTypeCounts);
+        summary.put("severity_breakdown", severityCounts);
+        summary.put("max_severity", maxSeverity(severityCounts));
+        summary.put("avg_severity_score", totalEvents > 0 ? severityScore / (double) totalEvents : 0);
+        summary.put("generated_at", Instant.now().toString());
+        
+        return summary;
     }
 
     /**
-     * Get high-severity alerts
-     * GET /api/v1/alerts?city=NYC&hours=24
+     * Get high-severity alerts, newest first
+     * GET /api/v1/alerts?city=NYC&hours=24&limit=50&cursor=...
      */
     @GetMapping("/alerts")
-    public ResponseEntity<Map<String, Object>> getAlerts(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getAlerts(
             @RequestParam(required = false) String city,
-            @RequestParam(defaultValue = "24") int hours) {
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String cursor) {
+        int pageSize = queryPager.clampLimit(limit);
+        boolean allCities = city == null || city.isEmpty();
+        return dynamoDBExecutor.submit(() -> {
         
-        try {
-            List<Map<String, Object>> alerts = new ArrayList<>();
-            String cutoffTime = Instant.now()
-                .minus(hours, ChronoUnit.HOURS)
-                .toString();
-            
-            if (city != null && !city.isEmpty()) {
-                // Query specific city
-                QuerySpec querySpec = new QuerySpec()
-                    .withHashKey("city", city)
-                    .withRangeKeyCondition(
-                        new RangeKeyCondition("timestamp").ge(cutoffTime)
-                    )
-                    .withScanIndexForward(false)
-                    .withMaxResultSize(50);
-                
-                ItemCollection<QueryOutcome> items = alertsTable.query(querySpec);
+            try {
+                Instant cutoff = Instant.now().minus(hours, ChronoUnit.HOURS);
+                String cutoffTime = cutoff.toString();
+            
+                List<AlertView> alerts;
+                String nextCursor;
+                String source = "dynamodb";
+            
+                Optional<List<AlertView>> cached = cursor == null || cursor.isEmpty()
+                    ? materializedView.recentAlerts(allCities ? null : city, cutoff.toEpochMilli(), pageSize)
+                    : Optional.empty();
+                if (cached.isPresent()) {
+                    alerts = new ArrayList<>(cached.get());
+                    alerts.sort(NEWEST_ALERT_FIRST);
+                    // The view holds every alert in range, so a short page is the last one
+                    nextCursor = alerts.size() < pageSize ? null
+                        : allCities ? Cursors.encodeStreams(severityPositionsAfter(alerts))
+                        : Cursors.encode(alertKey(alerts.get(alerts.size() - 1), false));
+                    source = "memory";
+                } else if (!allCities) {
+                    // Query specific city
+                    QueryRequest request = new QueryRequest(ALERTS_TABLE)
+                        .withKeyConditionExpression("city = :city AND #ts >= :cutoff")
+                        .withExpressionAttributeNames(Map.of("#ts", "timestamp"))
+                        .withExpressionAttributeValues(Map.of(
+                            ":city", new AttributeValue(city),
+                            ":cutoff", new AttributeValue(cutoffTime)))
+                        .withScanIndexForward(false);
                 
-                for (Item item : items) {
-                    alerts.add(itemToMap(item));
+                    QueryPager.Result<AlertView> page = queryPager.query(request, startKey(cursor),
+                        ALERTS_KEY, AlertView::fromItem, pageSize);
+                    alerts = page.items;
+                    nextCursor = Cursors.encode(page.nextKey);
+                } else {
+                    Map<String, Map<String, AttributeValue>> positions = cursor == null || cursor.isEmpty()
+                        ? new HashMap<>()
+                        : Cursors.decodeStreams(cursor);
+                    alerts = alertsAcrossCities(cutoffTime, positions, pageSize);
+                    nextCursor = Cursors.encodeStreams(positions);
                 }
-            } else {
-                // Scan all cities (for demo purposes)
-                ScanSpec scanSpec = new ScanSpec()
-                    .withFilterExpression("#ts >= :cutoff")
-                    .withNameMap(Map.of("#ts", "timestamp"))
-                    .withValueMap(new ValueMap().withString(":cutoff", cutoffTime))
-                    .withMaxResultSize(50);
-                
-                ItemCollection<ScanOutcome> items = alertsTable.scan(scanSpec);
-                
-                for (Item item : items) {
-                    alerts.add(itemToMap(item));
-                }
-            }
-            
-            // Sort by timestamp descending
-            alerts.sort((a, b) -> 
-                ((String)b.get("timestamp")).compareTo((String)a.get("timestamp")));
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("count", alerts.size());
-            response.put("time_range_hours", hours);
-            if (city != null) response.put("city", city);
-            response.put("alerts", alerts);
+                Map<String, Object> response = new HashMap<>();
+                response.put("count", alerts.size());
+                response.put("time_range_hours", hours);
+                if (city != null) response.put("city", city);
+                response.put("alerts", alerts);
+                if (nextCursor != null) {
+                    response.put("next_cursor", nextCursor);
+                }
+                response.put("source", source);
             
-            return ResponseEntity.ok(response);
+                return ResponseEntity.ok(response);
             
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                .body(Map.of("error", e.getMessage()));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                    .body(Map.of("error", rootMessage(e)));
+            }
+        });
+    }
+
+    /**
+     * Newest alerts across all cities: one descending Query per severity on
+     * severity-timestamp-index, merged by timestamp. positions holds each
+     * severity's cursor position and is advanced past the returned alerts.
+     */
+    private List<AlertView> alertsAcrossCities(String cutoffTime,
+                                               Map<String, Map<String, AttributeValue>> positions, int limit) {
+        Map<String, QueryPager.Result<AlertView>> pages = new HashMap<>();
+        for (String severity : ALERT_SEVERITIES) {
+            Map<String, AttributeValue> position = positions.get(severity);
+            if (position != null && position.isEmpty()) {
+                continue;  // exhausted
+            }
+            Map<String, AttributeValue> values = new HashMap<>();
+            values.put(":severity", new AttributeValue(severity));
+            values.put(":cutoff", new AttributeValue(cutoffTime));
+            QueryRequest request = new QueryRequest(ALERTS_TABLE)
+                .withIndexName(ALERTS_BY_SEVERITY_INDEX)
+                .withExpressionAttributeNames(Map.of("#ts", "timestamp"))
+                .withScanIndexForward(false);
+            Map<String, AttributeValue> startKey = position;
+            if (position != null && !position.containsKey("city")) {
+                // Upper bound left by a page served from the materialized view
+                values.put(":before", position.get("timestamp"));
+                request.withKeyConditionExpression("severity = :severity AND #ts BETWEEN :cutoff AND :before");
+                startKey = null;
+            } else {
+                request.withKeyConditionExpression("severity = :severity AND #ts >= :cutoff");
+            }
+            request.withExpressionAttributeValues(values);
+            pages.put(severity, queryPager.query(request, startKey, ALERTS_BY_SEVERITY_KEY,
+                AlertView::fromItem, limit));
+        }
+        
+        Map<String, Integer> consumed = new HashMap<>();
+        List<AlertView> alerts = new ArrayList<>(limit);
+        while (alerts.size() < limit) {
+            String newest = null;
+            for (String severity : ALERT_SEVERITIES) {
+                if (!pages.containsKey(severity)) {
+                    continue;
+                }
+                List<AlertView> items = pages.get(severity).items;
+                int next = consumed.getOrDefault(severity, 0);
+                if (next < items.size() && (newest == null || NEWEST_ALERT_FIRST.compare(items.get(next),
+                        pages.get(newest).items.get(consumed.getOrDefault(newest, 0))) < 0)) {
+                    newest = severity;
+                }
+            }
+            if (newest == null) {
+                break;
+            }
+            int next = consumed.getOrDefault(newest, 0);
+            alerts.add(pages.get(newest).items.get(next));
+            consumed.put(newest, next + 1);
+        }
+        
+        pages.forEach((severity, page) -> {
+            int taken = consumed.getOrDefault(severity, 0);
+            if (taken == page.items.size()) {
+                positions.put(severity, page.hasMore() ? page.nextKey : Map.of());
+            } else if (taken > 0) {
+                positions.put(severity, alertKey(page.items.get(taken - 1), true));
+            }
+        });
+        return alerts;
+    }
+
+    /**
+     * Per-severity positions after a full page of alerts from the materialized
+     * view: the last alert of each severity, or an upper bound on timestamp for
+     * a severity with none on the page
+     */
+    private static Map<String, Map<String, AttributeValue>> severityPositionsAfter(List<AlertView> alerts) {
+        Map<String, Map<String, AttributeValue>> positions = new HashMap<>();
+        String oldest = alerts.get(alerts.size() - 1).timestamp;
+        for (String severity : ALERT_SEVERITIES) {
+            positions.put(severity, Map.of(
+                "severity", new AttributeValue(severity),
+                "timestamp", new AttributeValue(oldest)));
+        }
+        for (AlertView alert : alerts) {
+            if (positions.containsKey(alert.severity)) {
+                positions.put(alert.severity, alertKey(alert, true));
+            }
+        }
+        return positions;
+    }
+
+    private static Map<String, AttributeValue> alertKey(AlertView alert, boolean withSeverity) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("city", new AttributeValue(alert.city));
+        key.put("timestamp", new AttributeValue(alert.timestamp));
+        if (withSeverity) {
+            key.put("severity", new AttributeValue(alert.severity));
         }
+        return key;
+    }
+
+    /**
+     * Live high-severity alerts as Server-Sent Events, straight from Kafka
+     * GET /api/v1/alerts/stream?city=NYC
+     */
+    @GetMapping(value = "/alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts(@RequestParam(required = false) String city) {
+        return alertStream.subscribe(city == null || city.isEmpty() ? null : city);
     }
 
     /**
@@ -204,87 +495,130 @@ public class CityStreamApiApplication {
      * GET /api/v1/cities
      */
     @GetMapping("/cities")
-    public ResponseEntity<Map<String, Object>> getCities() {
-        try {
-            // Scan aggregations to get unique cities
-            ScanSpec scanSpec = new ScanSpec()
-                .withProjectionExpression("city, event_count");
-            
-            ItemCollection<ScanOutcome> items = aggregationsTable.scan(scanSpec);
-            
-            Map<String, Integer> cityCounts = new HashMap<>();
-            
-            for (Item item : items) {
-                String city = item.getString("city");
-                int count = item.getInt("event_count");
-                cityCounts.put(city, 
-                    cityCounts.getOrDefault(city, 0) + count);
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getCities() {
+        return dynamoDBExecutor.submit(() -> {
+            try {
+                return ResponseEntity.ok(citiesCache.get(ALL));
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                    .body(Map.of("error", rootMessage(e)));
             }
-            
-            List<Map<String, Object>> cities = cityCounts.entrySet().stream()
-                .map(entry -> Map.of(
-                    "city", (Object)entry.getKey(),
-                    "total_events", entry.getValue()
-                ))
-                .sorted((a, b) -> 
-                    ((Integer)b.get("total_events")).compareTo(
-                        (Integer)a.get("total_events")))
-                .collect(Collectors.toList());
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("count", cities.size());
-            response.put("cities", cities);
-            
-            return ResponseEntity.ok(response);
-            
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                .body(Map.of("error", e.getMessage()));
-        }
+        });
+    }
+
+    private Map<String, Object> loadCities(String key) {
+        // Every city's total item, via the scope index
+        QuerySpec querySpec = new QuerySpec()
+            .withHashKey("scope", CITY_TOTAL_SCOPE)
+            .withProjectionExpression("city, event_count");
+        
+        List<Map<String, Object>> cities = StreamSupport
+            .stream(cityTotalsByScopeIndex.query(querySpec).spliterator(), false)
+            .map(item -> Map.of(
+                "city", (Object)item.getString("city"),
+                "total_events", item.getLong("event_count")
+            ))
+            .sorted((a, b) -> 
+                ((Long)b.get("total_events")).compareTo(
+                    (Long)a.get("total_events")))
+            .collect(Collectors.toList());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("count", cities.size());
+        response.put("cities", cities);
+        
+        return response;
     }
 
     /**
-     * Get windowed aggregations for a city and event type
-     * GET /api/v1/aggregations?city=NYC&event_type=traffic&limit=10
+     * Get windowed aggregations for a city and event type, newest first
+     * GET /api/v1/aggregations?city=NYC&eventType=traffic&limit=10&cursor=...
      */
     @GetMapping("/aggregations")
-    public ResponseEntity<Map<String, Object>> getAggregations(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getAggregations(
             @RequestParam String city,
             @RequestParam String eventType,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String cursor) {
+        int pageSize = queryPager.clampLimit(limit);
+        boolean firstPage = cursor == null || cursor.isEmpty();
+        return dynamoDBExecutor.submit(() -> {
         
-        try {
-            // Scan with filter
-            ScanSpec scanSpec = new ScanSpec()
-                .withFilterExpression("city = :city AND event_type = :type")
-                .withValueMap(new ValueMap()
-                    .withString(":city", city)
-                    .withString(":type", eventType))
-                .withMaxResultSize(limit);
-            
-            ItemCollection<ScanOutcome> items = aggregationsTable.scan(scanSpec);
+            try {
+                Map<String, Object> response = new HashMap<>();
+                response.put("city", city);
+                response.put("event_type", eventType);
+            
+                Optional<List<AggregationView>> cached = firstPage
+                    ? materializedView.recentWindows(city, eventType, pageSize)
+                    : Optional.empty();
+                if (cached.isPresent()) {
+                    AggregationView last = cached.get().get(cached.get().size() - 1);
+                    response.put("count", cached.get().size());
+                    response.put("aggregations", cached.get());
+                    response.put("next_cursor", Cursors.encode(Map.of(
+                        "city", new AttributeValue(city),
+                        "window_start", new AttributeValue(last.windowStart),
+                        "partition_key", new AttributeValue(last.partitionKey))));
+                    response.put("source", "memory");
+                    return ResponseEntity.ok(response);
+                }
             
-            List<Map<String, Object>> aggregations = StreamSupport
-                .stream(items.spliterator(), false)
-                .limit(limit)
-                .map(this::itemToMap)
-                .sorted((a, b) -> 
-                    ((String)b.get("window_start")).compareTo(
-                        (String)a.get("window_start")))
-                .collect(Collectors.toList());
+                // The city's windows newest first, keeping those of the requested type
+                QueryRequest request = new QueryRequest(AGGREGATIONS_TABLE)
+                    .withIndexName(AGGREGATIONS_BY_CITY_INDEX)
+                    .withKeyConditionExpression("city = :city")
+                    .withFilterExpression("event_type = :type")
+                    .withExpressionAttributeValues(Map.of(
+                        ":city", new AttributeValue(city),
+                        ":type", new AttributeValue(eventType)))
+                    .withScanIndexForward(false);
+            
+                List<AggregationView> aggregations;
+                try {
+                    QueryPager.Result<AggregationView> page = queryPager.query(request, startKey(cursor),
+                        AGGREGATIONS_BY_CITY_KEY, AggregationView::fromItem, pageSize);
+                    aggregations = page.items;
+                    if (page.hasMore()) {
+                        response.put("next_cursor", Cursors.encode(page.nextKey));
+                    }
+                } catch (AmazonServiceException e) {
+                    if (!firstPage || !isMissingIndex(e)) {
+                        throw e;
+                    }
+                    // city-window-index not created or still backfilling: parallel scan
+                    // for the most recent windows, without a cursor
+                    aggregations = parallelScanner.scanTop(
+                        () -> new ScanRequest(AGGREGATIONS_TABLE)
+                            .withFilterExpression("city = :city AND event_type = :type")
+                            .withExpressionAttributeValues(Map.of(
+                                ":city", new AttributeValue(city),
+                                ":type", new AttributeValue(eventType))),
+                        AggregationView::fromItem,
+                        NEWEST_WINDOW_FIRST,
+                        pageSize);
+                    response.put("source", "scan");
+                }
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("city", city);
-            response.put("event_type", eventType);
-            response.put("count", aggregations.size());
-            response.put("aggregations", aggregations);
+                response.put("count", aggregations.size());
+                response.put("aggregations", aggregations);
             
-            return ResponseEntity.ok(response);
+                return ResponseEntity.ok(response);
             
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                .body(Map.of("error", e.getMessage()));
-        }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                    .body(Map.of("error", rootMessage(e)));
+            }
+        });
+    }
+
+    private static boolean isMissingIndex(AmazonServiceException e) {
+        String message = String.valueOf(e.getErrorMessage());
+        return "ValidationException".equals(e.getErrorCode())
+            && (message.contains("specified index") || message.contains("backfilling"));
     }
 
     /**
@@ -292,60 +626,169 @@ public class CityStreamApiApplication {
      * GET /api/v1/stats
      */
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> getStats() {
-        try {
-            // Get total event count from aggregations
-            ScanSpec scanSpec = new ScanSpec()
-                .withProjectionExpression("event_count");
-            
-            ItemCollection<ScanOutcome> items = aggregationsTable.scan(scanSpec);
-            
-            int totalEvents = StreamSupport
-                .stream(items.spliterator(), false)
-                .mapToInt(item -> item.getInt("event_count"))
-                .sum();
-            
-            // Count alerts
-            ScanSpec alertSpec = new ScanSpec()
-                .withProjectionExpression("severity");
-            
-            ItemCollection<ScanOutcome> alertItems = alertsTable.scan(alertSpec);
-            
-            Map<String, Integer> severityCounts = new HashMap<>();
-            severityCounts.put("high", 0);
-            severityCounts.put("critical", 0);
-            
-            for (Item item : alertItems) {
-                String severity = item.getString("severity");
-                severityCounts.put(severity, 
-                    severityCounts.getOrDefault(severity, 0) + 1);
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getStats() {
+        return dynamoDBExecutor.submit(() -> {
+            try {
+                return ResponseEntity.ok(statsCache.get(ALL));
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                    .body(Map.of("error", rootMessage(e)));
             }
-            
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("total_events_processed", totalEvents);
-            stats.put("high_severity_alerts", severityCounts.get("high"));
-            stats.put("critical_alerts", severityCounts.get("critical"));
-            stats.put("generated_at", Instant.now().toString());
-            
-            return ResponseEntity.ok(stats);
-            
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                .body(Map.of("error", e.getMessage()));
+        });
+    }
+
+    private Map<String, Object> loadStats(String key) {
+        Item global = cityTotalsTable.getItem("city", GLOBAL_TOTALS, "scope", GLOBAL_SCOPE);
+        if (global == null) {
+            // Consumer has not written global counters yet
+            return loadStatsFromIndexes();
+        }
+        
+        // Per-minute counters for the last hour; older items are expired by TTL
+        Instant now = Instant.now();
+        QuerySpec minuteSpec = new QuerySpec()
+            .withHashKey("city", GLOBAL_TOTALS)
+            .withRangeKeyCondition(new RangeKeyCondition("scope").between(
+                MINUTE_SCOPE_PREFIX + MINUTE_FORMAT.format(now.minus(1, ChronoUnit.HOURS)),
+                MINUTE_SCOPE_PREFIX + MINUTE_FORMAT.format(now)));
+        
+        List<Map<String, Object>> perMinute = new ArrayList<>();
+        long eventsLastHour = 0;
+        for (Item item : cityTotalsTable.query(minuteSpec)) {
+            Map<String, Object> minute = new LinkedHashMap<>();
+            minute.put("minute", item.getString("scope").substring(MINUTE_SCOPE_PREFIX.length()));
+            minute.put("events", item.getLong("event_count"));
+            minute.put("alerts", item.getLong("high_count") + item.getLong("critical_count"));
+            perMinute.add(minute);
+            eventsLastHour += item.getLong("event_count");
+        }
+        
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total_events_processed", global.getLong("event_count"));
+        stats.put("high_severity_alerts", global.getLong("high_count"));
+        stats.put("critical_alerts", global.getLong("critical_count"));
+        stats.put("severity_breakdown", severityCounts(global));
+        stats.put("events_last_hour", eventsLastHour);
+        stats.put("events_per_minute", eventsLastHour / 60.0);
+        stats.put("per_minute", perMinute);
+        stats.put("last_updated", global.getString("last_updated"));
+        stats.put("generated_at", now.toString());
+        
+        return stats;
+    }
+
+    /**
+     * Fallback for /stats without global counters: city totals from the scope
+     * index and alert counts from COUNT queries on severity-timestamp-index.
+     * Runs on the calling thread, usually a DynamoDB executor thread: waiting
+     * there on tasks queued to the same executor deadlocks once it is saturated.
+     */
+    private Map<String, Object> loadStatsFromIndexes() {
+        QuerySpec totalsSpec = new QuerySpec()
+            .withHashKey("scope", CITY_TOTAL_SCOPE)
+            .withProjectionExpression("event_count");
+        long totalEvents = StreamSupport
+            .stream(cityTotalsByScopeIndex.query(totalsSpec).spliterator(), false)
+            .mapToLong(item -> item.getLong("event_count"))
+            .sum();
+        
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total_events_processed", totalEvents);
+        stats.put("high_severity_alerts", countAlerts("high"));
+        stats.put("critical_alerts", countAlerts("critical"));
+        stats.put("generated_at", Instant.now().toString());
+        
+        return stats;
+    }
+
+    private long countAlerts(String severity) {
+        QuerySpec querySpec = new QuerySpec()
+            .withHashKey("severity", severity)
+            .withSelect(Select.COUNT);
+        long count = 0;
+        for (Page<Item, QueryOutcome> page : alertsBySeverityIndex.query(querySpec).pages()) {
+            count += page.getLowLevelResult().getQueryResult().getCount();
         }
+        return count;
     }
 
     /**
-     * Helper method to convert DynamoDB Item to Map
+     * last_updated of each city's TOTAL item, read with BatchGetItem; cities
+     * without one, or left unprocessed by DynamoDB, are missing from the result
      */
-    private Map<String, Object> itemToMap(Item item) {
-        Map<String, Object> map = new HashMap<>();
-        item.attributes().forEach(attr -> {
-            Object value = item.get(attr.getKey());  // Changed from getName() to getKey()
-            if (value != null) {
-                map.put(attr.getKey(), value);  // Changed from getName() to getKey()
+    private Map<String, String> cityTotalsLastUpdated(Collection<String> cities) {
+        List<String> keys = new ArrayList<>(cities);
+        Map<String, String> versions = new HashMap<>();
+        for (int from = 0; from < keys.size(); from += BATCH_GET_LIMIT) {
+            TableKeysAndAttributes request = new TableKeysAndAttributes(cityTotalsTable.getTableName())
+                .withProjectionExpression("city, last_updated");
+            for (String city : keys.subList(from, Math.min(from + BATCH_GET_LIMIT, keys.size()))) {
+                request.addHashAndRangePrimaryKey("city", city, "scope", CITY_TOTAL_SCOPE);
             }
-        });
-        return map;
+            dynamoDB.batchGetItem(request).getTableItems()
+                .getOrDefault(cityTotalsTable.getTableName(), List.of())
+                .forEach(item -> versions.put(item.getString("city"), item.getString("last_updated")));
+        }
+        return versions;
+    }
+
+    /**
+     * last_updated of the #GLOBAL item for every key, which all depend on it
+     */
+    private Map<String, String> globalLastUpdated(Collection<String> keys) {
+        Item item = cityTotalsTable.getItem(new GetItemSpec()
+            .withPrimaryKey("city", GLOBAL_TOTALS, "scope", GLOBAL_SCOPE)
+            .withProjectionExpression("last_updated"));
+        if (item == null) {
+            return Map.of();
+        }
+        Map<String, String> versions = new HashMap<>();
+        keys.forEach(key -> versions.put(key, item.getString("last_updated")));
+        return versions;
+    }
+
+    /**
+     * Per-severity counters of a running totals item
+     */
+    private static Map<String, Long> severityCounts(Item item) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        SEVERITY_LEVELS.forEach(level -> counts.put(level, 
+            item.isPresent(level + "_count") ? item.getLong(level + "_count") : 0L));
+        return counts;
+    }
+
+    /**
+     * Sum of severity ranks (low=1 .. critical=4) for a running totals item
+     */
+    private static long severityScore(Item item) {
+        return item.isPresent("severity_score") ? item.getLong("severity_score") : 0;
+    }
+
+    private static String maxSeverity(Map<String, Long> severityCounts) {
+        String max = null;
+        for (String level : SEVERITY_LEVELS) {
+            if (severityCounts.getOrDefault(level, 0L) > 0) {
+                max = level;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * ExclusiveStartKey for a request cursor, or null for the first page
+     */
+    private static Map<String, AttributeValue> startKey(String cursor) {
+        return cursor == null || cursor.isEmpty() ? null : Cursors.decode(cursor);
+    }
+
+    /**
+     * Message of the underlying failure when a cache loader throws
+     */
+    private static String rootMessage(Exception e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return String.valueOf(cause.getMessage());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package com.citystream.api;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Opaque pagination cursors: a URL-safe Base64 JSON object of string key
+ * attributes (a LastEvaluatedKey or the key of the last returned item).
+ * Merged reads keep one position per stream; an empty position marks a
+ * stream that is exhausted, a missing one a stream that has not started.
+ */
+final class Cursors {
+
+    private static final ObjectMapper CURSOR_MAPPER = new ObjectMapper();
+
+    private Cursors() {
+    }
+
+    /**
+     * Encode a start key as a cursor; null when there are no more results
+     */
+    static String encode(Map<String, AttributeValue> key) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        return write(strings(key));
+    }
+
+    /**
+     * Decode a cursor produced by encode into an ExclusiveStartKey
+     */
+    static Map<String, AttributeValue> decode(String cursor) {
+        return attributes(read(cursor, new TypeReference<Map<String, String>>() {}));
+    }
+
+    /**
+     * Encode one position per stream; null when every stream is exhausted
+     */
+    static String encodeStreams(Map<String, Map<String, AttributeValue>> positions) {
+        if (positions.values().stream().allMatch(key -> key != null && key.isEmpty())) {
+            return null;
+        }
+        Map<String, Map<String, String>> streams = new TreeMap<>();
+        positions.forEach((stream, key) -> {
+            if (key != null) {
+                streams.put(stream, strings(key));
+            }
+        });
+        return write(streams);
+    }
+
+    static Map<String, Map<String, AttributeValue>> decodeStreams(String cursor) {
+        Map<String, Map<String, String>> streams =
+            read(cursor, new TypeReference<Map<String, Map<String, String>>>() {});
+        Map<String, Map<String, AttributeValue>> positions = new HashMap<>();
+        streams.forEach((stream, key) -> positions.put(stream, attributes(key)));
+        return positions;
+    }
+
+    /**
+     * The key attributes of an item, to resume right after it
+     */
+    static Map<String, AttributeValue> keyOf(Map<String, AttributeValue> item, List<String> keyAttributes) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        for (String name : keyAttributes) {
+            key.put(name, item.get(name));
+        }
+        return key;
+    }
+
+    private static Map<String, String> strings(Map<String, AttributeValue> key) {
+        Map<String, String> values = new TreeMap<>();
+        key.forEach((name, value) -> values.put(name, value.getS()));
+        return values;
+    }
+
+    private static Map<String, AttributeValue> attributes(Map<String, String> values) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        values.forEach((name, value) -> key.put(name, new AttributeValue(value)));
+        return key;
+    }
+
+    private static String write(Object value) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(CURSOR_MAPPER.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode cursor", e);
+        }
+    }
+
+    private static <T> T read(String cursor, TypeReference<T> type) {
+        try {
+            return CURSOR_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), type);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.citystream.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs DynamoDB-backed request handlers off the servlet threads.
+ *
+ * Handlers return a CompletableFuture, so Tomcat releases its request thread
+ * while the blocking SDK call runs here. Concurrency is capped at
+ * max-concurrency (matching the SDK connection pool) with a bounded queue;
+ * once both are full the request is answered with 503 immediately instead of
+ * tying up a servlet thread, so /health and other cheap endpoints keep
+ * responding during a burst of slow reads.
+ */
+@Component
+public class DynamoDBExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    public DynamoDBExecutor(MeterRegistry meterRegistry,
+                            @Value("${citystream.dynamodb.max-concurrency:50}") int maxConcurrency,
+                            @Value("${citystream.dynamodb.queue-capacity:200}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "dynamodb-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("citystream.api.dynamodb.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("DynamoDB-backed requests in progress")
+            .register(meterRegistry);
+        Gauge.builder("citystream.api.dynamodb.queued", executor, pool -> pool.getQueue().size())
+            .description("DynamoDB-backed requests waiting for a slot")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("citystream.api.dynamodb.rejected")
+            .description("Requests answered with 503 because the DynamoDB executor was full")
+            .register(meterRegistry);
+
+        logger.info("DynamoDB executor: maxConcurrency={}, queueCapacity={}", maxConcurrency, queueCapacity);
+    }
+
+    /**
+     * Run a handler on the DynamoDB executor, or answer 503 if it is saturated
+     */
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> submit(
+            Supplier<ResponseEntity<Map<String, Object>>> handler) {
+        try {
+            return CompletableFuture.supplyAsync(handler, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "Too many concurrent requests, retry later")));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
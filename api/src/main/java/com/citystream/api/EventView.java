@@ -0,0 +1,96 @@
+package com.citystream.api;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A raw event as returned by /events, decoded straight from a DynamoDB item
+ * or a Kafka record and written field by field to the response
+ */
+@JsonSerialize(using = EventView.Serializer.class)
+public final class EventView {
+
+    public final String eventId;
+    public final String city;
+    public final String eventType;
+    public final String severity;
+    public final String timestamp;
+    public final String description;
+    public final String processingTime;
+    public final Long ttl;
+
+    // Sort key; not part of the response
+    public final long timestampMs;
+
+    public EventView(String eventId, String city, String eventType, String severity, String timestamp,
+                     String description, String processingTime, Long ttl) {
+        this.eventId = eventId;
+        this.city = city;
+        this.eventType = eventType;
+        this.severity = severity;
+        this.timestamp = timestamp;
+        this.description = description;
+        this.processingTime = processingTime;
+        this.ttl = ttl;
+        this.timestampMs = Views.epochMillis(timestamp);
+    }
+
+    static EventView fromItem(Map<String, AttributeValue> item) {
+        return new EventView(
+            Views.string(item, "event_id"),
+            Views.string(item, "city"),
+            Views.string(item, "event_type"),
+            Views.string(item, "severity"),
+            Views.string(item, "timestamp"),
+            Views.string(item, "description"),
+            Views.string(item, "processing_time"),
+            Views.optionalNumber(item, "ttl"));
+    }
+
+    /**
+     * From a parsed Kafka record, with the event_id the consumer would assign
+     */
+    static EventView fromEvent(Map<String, Object> event) {
+        String city = Views.string(event, "city", null);
+        String eventType = Views.string(event, "event_type", null);
+        String timestamp = Views.string(event, "timestamp", null);
+        return new EventView(
+            Views.string(event, "event_id", city + "-" + eventType + "-" + timestamp),
+            city,
+            eventType,
+            Views.string(event, "severity", null),
+            timestamp,
+            Views.string(event, "description", null),
+            null,
+            null);
+    }
+
+    static final class Serializer extends StdSerializer<EventView> {
+
+        Serializer() {
+            super(EventView.class);
+        }
+
+        @Override
+        public void serialize(EventView event, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            Views.writeString(gen, "event_id", event.eventId);
+            Views.writeString(gen, "city", event.city);
+            Views.writeString(gen, "event_type", event.eventType);
+            Views.writeString(gen, "severity", event.severity);
+            Views.writeString(gen, "timestamp", event.timestamp);
+            Views.writeString(gen, "description", event.description);
+            Views.writeString(gen, "processing_time", event.processingTime);
+            if (event.ttl != null) {
+                gen.writeNumberField("ttl", event.ttl);
+            }
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.citystream.api;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional in-memory view of the city-events topic (citystream.view.enabled).
+ *
+ * Built from the shared Kafka tail, it keeps the newest events per city in
+ * fixed-size rings, per city and event type counters for the most recent
+ * 5-minute windows (keyed on event time, like the consumer's aggregations),
+ * and a ring of recent high/critical alerts. Every structure is bounded by configuration.
+ *
+ * The view only knows what arrived since the API started, so each read
+ * returns empty when the request reaches past the retained horizon and the
+ * caller falls back to DynamoDB. If the tail reports a gap, everything is
+ * dropped and the horizon starts again from the next event.
+ */
+@Component
+public class MaterializedView implements CityEventsTail.Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaterializedView.class);
+
+    private static final List<String> SEVERITY_LEVELS = AggregationView.SEVERITY_LEVELS;
+    private static final long WINDOW_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final DateTimeFormatter PARTITION_KEY_TIME =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    private final boolean enabled;
+    private final int eventsPerCity;
+    private final int maxCities;
+    private final int retainedWindows;
+
+    private final Map<String, Ring<EventView>> eventsByCity = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, NavigableMap<Long, WindowCounter>>> windowsByCity =
+        new ConcurrentHashMap<>();
+    private final Ring<AlertView> alerts;
+
+    private final LongAdder untrackedEvents = new LongAdder();
+    private final AtomicLong lastRecordTimestampMs = new AtomicLong();
+    // Horizon of the alerts ring (Kafka record time) and of the windows (event time)
+    private volatile long startedAtMs;
+    private volatile long startedAtEventTimeMs;
+
+    public MaterializedView(CityEventsTail tail, MeterRegistry meterRegistry,
+                            @Value("${citystream.view.enabled:false}") boolean enabled,
+                            @Value("${citystream.view.events-per-city:1000}") int eventsPerCity,
+                            @Value("${citystream.view.max-cities:1000}") int maxCities,
+                            @Value("${citystream.view.windows:12}") int retainedWindows,
+                            @Value("${citystream.view.alerts:5000}") int maxAlerts) {
+        this.enabled = enabled;
+        this.eventsPerCity = eventsPerCity;
+        this.maxCities = maxCities;
+        this.retainedWindows = Math.max(1, retainedWindows);
+        this.alerts = new Ring<>(maxAlerts);
+
+        if (!enabled) {
+            return;
+        }
+
+        Gauge.builder("citystream.api.view.lag", this, MaterializedView::freshnessLagMs)
+            .description("Time since the newest Kafka record applied to the view")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("citystream.api.view.events", this, MaterializedView::retainedEvents)
+            .description("Events retained in per-city rings")
+            .register(meterRegistry);
+        Gauge.builder("citystream.api.view.cities", eventsByCity, Map::size)
+            .description("Cities tracked by the view")
+            .register(meterRegistry);
+        Gauge.builder("citystream.api.view.untracked", untrackedEvents, LongAdder::sum)
+            .description("Events ignored because max-cities was reached")
+            .register(meterRegistry);
+
+        tail.addListener(this);
+        logger.info("Materialized view enabled: eventsPerCity={}, maxCities={}, windows={}, alerts={}",
+            eventsPerCity, maxCities, retainedWindows, maxAlerts);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onEvent(Map<String, Object> event, long recordTimestampMs) {
+        Object cityValue = event.get("city");
+        Object eventType = event.get("event_type");
+        if (!(cityValue instanceof String) || !(eventType instanceof String)) {
+            return;
+        }
+        String city = (String) cityValue;
+        EventView stored = EventView.fromEvent(event);
+        long eventTimeMs = stored.timestampMs > 0 ? stored.timestampMs : recordTimestampMs;
+        if (startedAtMs == 0) {
+            startedAtMs = recordTimestampMs;
+            startedAtEventTimeMs = eventTimeMs;
+        }
+
+        // Before the per-city cap: the alert ring answers cross-city pages,
+        // so it must hold every alert, not just those of tracked cities
+        String severity = stored.severity;
+        if ("high".equals(severity) || "critical".equals(severity)) {
+            alerts.add(AlertView.fromEvent(stored), recordTimestampMs);
+        }
+
+        Ring<EventView> ring = eventsByCity.get(city);
+        if (ring == null) {
+            if (eventsByCity.size() >= maxCities) {
+                untrackedEvents.increment();
+                return;
+            }
+            ring = eventsByCity.computeIfAbsent(city, key -> new Ring<>(eventsPerCity));
+        }
+
+        ring.add(stored, recordTimestampMs);
+
+        // Late events still count towards their own window while it is retained
+        long windowStart = eventTimeMs - Math.floorMod(eventTimeMs, WINDOW_MS);
+        NavigableMap<Long, WindowCounter> windows = windowsByCity
+            .computeIfAbsent(city, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent((String) eventType, key -> new TreeMap<>());
+        synchronized (windows) {
+            WindowCounter window = windows.get(windowStart);
+            if (window == null && (windows.size() < retainedWindows || windowStart > windows.firstKey())) {
+                window = new WindowCounter(windowStart);
+                windows.put(windowStart, window);
+                while (windows.size() > retainedWindows) {
+                    windows.pollFirstEntry();
+                }
+            }
+            if (window != null) {
+                window.add(SEVERITY_LEVELS.indexOf(severity), recordTimestampMs);
+            }
+        }
+
+        lastRecordTimestampMs.accumulateAndGet(recordTimestampMs, Math::max);
+    }
+
+    /**
+     * Events were skipped, so no retained structure is complete any more
+     */
+    @Override
+    public void onGap() {
+        startedAtMs = 0;
+        eventsByCity.clear();
+        windowsByCity.clear();
+        alerts.clear();
+        logger.warn("Materialized view reset after a gap in the Kafka tail");
+    }
+
+    /**
+     * Newest events for a city, or empty if the ring does not hold enough
+     * of them to fill the page
+     */
+    public Optional<List<EventView>> recentEvents(String city, int limit) {
+        Ring<EventView> ring = enabled ? eventsByCity.get(city) : null;
+        if (ring == null) {
+            return Optional.empty();
+        }
+        List<EventView> events = ring.newestFirst();
+        if (events.size() < limit) {
+            return Optional.empty();
+        }
+        events.sort(Comparator.comparingLong((EventView event) -> event.timestampMs).reversed());
+        return Optional.of(new ArrayList<>(events.subList(0, limit)));
+    }
+
+    /**
+     * Alerts received at or after sinceMs, optionally for one city, or empty
+     * if part of that range is older than the view's horizon
+     */
+    public Optional<List<AlertView>> recentAlerts(String city, long sinceMs, int limit) {
+        if (!enabled || startedAtMs == 0 || sinceMs < Math.max(startedAtMs, alerts.evictedUpToMs())) {
+            return Optional.empty();
+        }
+        List<AlertView> matches = new ArrayList<>();
+        for (AlertView alert : alerts.newestFirstSince(sinceMs)) {
+            if (city == null || city.equals(alert.city)) {
+                matches.add(alert);
+                if (matches.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return Optional.of(matches);
+    }
+
+    /**
+     * Most recent windows for a city and event type, newest first, or empty
+     * unless the view holds {@code limit} windows that all started after it did
+     */
+    public Optional<List<AggregationView>> recentWindows(String city, String eventType, int limit) {
+        Map<String, NavigableMap<Long, WindowCounter>> byType = enabled ? windowsByCity.get(city) : null;
+        NavigableMap<Long, WindowCounter> windows = byType == null ? null : byType.get(eventType);
+        if (windows == null) {
+            return Optional.empty();
+        }
+        List<AggregationView> result = new ArrayList<>();
+        synchronized (windows) {
+            for (WindowCounter window : windows.descendingMap().values()) {
+                if (result.size() == limit) {
+                    break;
+                }
+                if (window.windowStartMs < startedAtEventTimeMs) {
+                    return Optional.empty();
+                }
+                result.add(window.toView(city, eventType));
+            }
+        }
+        return result.size() == limit ? Optional.of(result) : Optional.empty();
+    }
+
+    public double freshnessLagMs() {
+        long last = lastRecordTimestampMs.get();
+        return last == 0 ? Double.NaN : System.currentTimeMillis() - last;
+    }
+
+    private double retainedEvents() {
+        return eventsByCity.values().stream().mapToInt(Ring::size).sum();
+    }
+
+    /**
+     * Fixed-capacity ring of events, overwriting the oldest
+     */
+    private static final class Ring<T> {
+        private final Object[] events;
+        private final long[] receivedAtMs;
+        private int next;
+        private int size;
+        private long evictedUpToMs;
+
+        Ring(int capacity) {
+            this.events = new Object[capacity];
+            this.receivedAtMs = new long[capacity];
+        }
+
+        synchronized void add(T event, long atMs) {
+            if (size == events.length) {
+                evictedUpToMs = receivedAtMs[next];
+            } else {
+                size++;
+            }
+            events[next] = event;
+            receivedAtMs[next] = atMs;
+            next = (next + 1) % events.length;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(events, null);
+            next = 0;
+            size = 0;
+            evictedUpToMs = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long evictedUpToMs() {
+            return evictedUpToMs;
+        }
+
+        synchronized List<T> newestFirst() {
+            return newestFirstSince(Long.MIN_VALUE);
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized List<T> newestFirstSince(long sinceMs) {
+            List<T> result = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                int index = Math.floorMod(next - i, events.length);
+                if (receivedAtMs[index] < sinceMs) {
+                    break;
+                }
+                result.add((T) events[index]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Counters for one 5-minute window; guarded by the owning map
+     */
+    private static final class WindowCounter {
+        final long windowStartMs;
+        final long[] severityCounts = new long[SEVERITY_LEVELS.size()];
+        long eventCount;
+        long lastUpdatedMs;
+
+        WindowCounter(long windowStartMs) {
+            this.windowStartMs = windowStartMs;
+        }
+
+        void add(int severityIndex, long atMs) {
+            eventCount++;
+            if (severityIndex >= 0) {
+                severityCounts[severityIndex]++;
+            }
+            lastUpdatedMs = Math.max(lastUpdatedMs, atMs);
+        }
+
+        // Same attributes and timestamp format as the consumer's aggregation items
+        AggregationView toView(String city, String eventType) {
+            long severityScore = 0;
+            for (int i = 0; i < severityCounts.length; i++) {
+                severityScore += severityCounts[i] * (i + 1);
+            }
+            return new AggregationView(
+                city + "#" + eventType + "#" + PARTITION_KEY_TIME.format(Instant.ofEpochMilli(windowStartMs)),
+                new Timestamp(windowStartMs).toString(),
+                new Timestamp(windowStartMs + WINDOW_MS).toString(),
+                city,
+                eventType,
+                eventCount,
+                severityCounts.clone(),
+                severityScore,
+                new Timestamp(lastUpdatedMs).toString());
+        }
+    }
+}
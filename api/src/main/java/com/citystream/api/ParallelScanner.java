@@ -0,0 +1,197 @@
+package com.citystream.api;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Parallel segmented Scan for reads that cannot be served by a key or index.
+ *
+ * The table is split into {@code segments} scan segments that run on a
+ * bounded thread pool. Each segment folds its items into its own partial
+ * result, and the partials are combined once all segments finish. Consumed
+ * read capacity is reported per page and paced against a shared
+ * read-units-per-second budget (0 = unlimited), so a large scan does not
+ * starve the other readers of the table. Items are handed over as the
+ * low-level attribute maps of each page, without document API conversion.
+ *
+ * Its only caller is the first page of /aggregations while city-window-index
+ * is missing or backfilling. It is kept rather than failing at startup
+ * because adding that index to an existing aggregations table backfills
+ * online, which takes hours on a large table: the table stays writable and
+ * the API keeps serving windows, just slower and without a cursor. Once the
+ * index is ACTIVE nothing scans, so this can go together with the fallback
+ * when every deployment's table has the index.
+ */
+@Component
+public class ParallelScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelScanner.class);
+
+    private final AmazonDynamoDB client;
+    private final int segments;
+    private final ExecutorService executor;
+    private final ReadRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+
+    public ParallelScanner(AmazonDynamoDB client, MeterRegistry meterRegistry,
+                           @Value("${citystream.scan.segments:8}") int segments,
+                           @Value("${citystream.scan.threads:16}") int threads,
+                           @Value("${citystream.scan.read-units-per-second:0}") double readUnitsPerSecond) {
+        this.client = client;
+        this.meterRegistry = meterRegistry;
+        this.segments = Math.max(1, segments);
+        this.rateLimiter = new ReadRateLimiter(readUnitsPerSecond);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "parallel-scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Parallel scan: segments={}, threads={}, readUnitsPerSecond={}",
+            this.segments, threads, readUnitsPerSecond);
+    }
+
+    /**
+     * Scan the whole table and fold every item into a partial result per
+     * segment. requestFactory must return a new ScanRequest on each call.
+     */
+    public <A> A scan(Supplier<ScanRequest> requestFactory, Supplier<A> identity,
+                      BiConsumer<A, Map<String, AttributeValue>> accumulator, BinaryOperator<A> combiner) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        String tableName = null;
+        List<CompletableFuture<A>> partials = new ArrayList<>(segments);
+        for (int segment = 0; segment < segments; segment++) {
+            ScanRequest request = requestFactory.get();
+            tableName = request.getTableName();
+            int current = segment;
+            partials.add(CompletableFuture.supplyAsync(
+                () -> scanSegment(request, current, identity, accumulator), executor));
+        }
+
+        A result = identity.get();
+        for (CompletableFuture<A> partial : partials) {
+            result = combiner.apply(result, partial.join());
+        }
+
+        sample.stop(Timer.builder("citystream.api.scan")
+            .description("Wall-clock time of parallel table scans")
+            .tag("table", tableName)
+            .register(meterRegistry));
+        return result;
+    }
+
+    /**
+     * Scan the whole table, decode every item and keep the first {@code limit} in the given order
+     */
+    public <T> List<T> scanTop(Supplier<ScanRequest> requestFactory, Function<Map<String, AttributeValue>, T> decoder,
+                               Comparator<T> order, int limit) {
+        // Max-heap on the reverse order, so the head is the item to evict first
+        Comparator<T> evictFirst = order.reversed();
+        PriorityQueue<T> top = scan(requestFactory,
+            () -> new PriorityQueue<>(evictFirst),
+            (heap, item) -> offerBounded(heap, decoder.apply(item), limit),
+            (left, right) -> {
+                right.forEach(item -> offerBounded(left, item, limit));
+                return left;
+            });
+
+        List<T> items = new ArrayList<>(top);
+        items.sort(order);
+        return items;
+    }
+
+    private <A> A scanSegment(ScanRequest request, int segment, Supplier<A> identity,
+                              BiConsumer<A, Map<String, AttributeValue>> accumulator) {
+        request.withSegment(segment)
+            .withTotalSegments(segments)
+            .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+
+        A partial = identity.get();
+        do {
+            ScanResult page = client.scan(request);
+            for (Map<String, AttributeValue> item : page.getItems()) {
+                accumulator.accept(partial, item);
+            }
+            ConsumedCapacity consumed = page.getConsumedCapacity();
+            if (consumed != null) {
+                rateLimiter.acquire(consumed.getCapacityUnits());
+            }
+            request.setExclusiveStartKey(page.getLastEvaluatedKey());
+        } while (request.getExclusiveStartKey() != null && !request.getExclusiveStartKey().isEmpty());
+        return partial;
+    }
+
+    private static <T> void offerBounded(PriorityQueue<T> heap, T item, int limit) {
+        heap.offer(item);
+        if (heap.size() > limit) {
+            heap.poll();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Paces callers to an average number of read units per second, shared by
+     * all segments. Capacity is charged after each page, once it is known.
+     */
+    private static final class ReadRateLimiter {
+        private final double nanosPerUnit;
+        private long nextFreeNanos = System.nanoTime();
+
+        ReadRateLimiter(double unitsPerSecond) {
+            this.nanosPerUnit = unitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / unitsPerSecond : 0;
+        }
+
+        void acquire(double units) {
+            if (nanosPerUnit == 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(nextFreeNanos, now);
+                nextFreeNanos = start + (long) (units * nanosPerUnit);
+                waitNanos = start - now;
+            }
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while pacing scan", e);
+                }
+            }
+        }
+    }
+}
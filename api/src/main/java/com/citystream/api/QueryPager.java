@@ -0,0 +1,128 @@
+package com.citystream.api;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reads one page of a Query with true limit semantics.
+ *
+ * DynamoDB's Limit caps the items evaluated, not the items returned, so a
+ * Query with a filter can come back short or empty while more matches
+ * follow. The pager keeps issuing requests from the LastEvaluatedKey until
+ * {@code limit} items are collected, the results run out, or the read budget
+ * (items evaluated per page) is spent. The returned next key resumes exactly
+ * after the last item handed back, so clients can follow it page by page
+ * without rereading from the start.
+ */
+@Component
+public class QueryPager {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPager.class);
+
+    private final AmazonDynamoDB client;
+    private final MeterRegistry meterRegistry;
+    private final int maxLimit;
+    private final int readBudget;
+    private final int pageSize;
+
+    public QueryPager(AmazonDynamoDB client, MeterRegistry meterRegistry,
+                      @Value("${citystream.pagination.max-limit:500}") int maxLimit,
+                      @Value("${citystream.pagination.read-budget:2000}") int readBudget,
+                      @Value("${citystream.pagination.page-size:100}") int pageSize) {
+        this.client = client;
+        this.meterRegistry = meterRegistry;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.readBudget = Math.max(1, readBudget);
+        this.pageSize = Math.max(1, pageSize);
+        logger.info("Query pagination: maxLimit={}, readBudget={}, pageSize={}",
+            this.maxLimit, this.readBudget, this.pageSize);
+    }
+
+    /**
+     * Requested page size, bounded to 1..max-limit
+     */
+    public int clampLimit(int limit) {
+        return Math.min(Math.max(1, limit), maxLimit);
+    }
+
+    /**
+     * Collect up to {@code limit} items from startKey on (null = from the
+     * beginning). keyAttributes are the key attributes of the table or index
+     * read, used to resume after an item in the middle of a DynamoDB page.
+     */
+    public <T> Result<T> query(QueryRequest request, Map<String, AttributeValue> startKey,
+                               List<String> keyAttributes, Function<Map<String, AttributeValue>, T> decoder,
+                               int limit) {
+        List<T> items = new ArrayList<>(limit);
+        Map<String, AttributeValue> nextKey = startKey;
+        int evaluated = 0;
+
+        while (true) {
+            // Read ahead in pageSize chunks for filtered queries; extra matches are not lost
+            // because the next key is taken from the last item returned
+            request.withExclusiveStartKey(nextKey)
+                .withLimit(Math.min(readBudget - evaluated, Math.max(limit - items.size(), pageSize)));
+            QueryResult result = client.query(request);
+            evaluated += result.getScannedCount() == null ? 0 : result.getScannedCount();
+
+            List<Map<String, AttributeValue>> page = result.getItems();
+            for (int i = 0; i < page.size(); i++) {
+                items.add(decoder.apply(page.get(i)));
+                if (items.size() == limit) {
+                    nextKey = i == page.size() - 1
+                        ? result.getLastEvaluatedKey()
+                        : Cursors.keyOf(page.get(i), keyAttributes);
+                    return record(request, new Result<>(items, nextKey, evaluated));
+                }
+            }
+
+            nextKey = result.getLastEvaluatedKey();
+            if (nextKey == null || nextKey.isEmpty() || evaluated >= readBudget) {
+                return record(request, new Result<>(items, nextKey, evaluated));
+            }
+        }
+    }
+
+    private <T> Result<T> record(QueryRequest request, Result<T> result) {
+        DistributionSummary.builder("citystream.api.page.evaluated")
+            .description("Items evaluated by DynamoDB to fill one response page")
+            .tag("table", request.getIndexName() == null
+                ? request.getTableName()
+                : request.getTableName() + "/" + request.getIndexName())
+            .register(meterRegistry)
+            .record(result.evaluated);
+        return result;
+    }
+
+    /**
+     * One page of decoded items and the key to resume after them (null when done)
+     */
+    public static final class Result<T> {
+        public final List<T> items;
+        public final Map<String, AttributeValue> nextKey;
+        public final int evaluated;
+
+        Result(List<T> items, Map<String, AttributeValue> nextKey, int evaluated) {
+            this.items = items;
+            this.nextKey = nextKey == null || nextKey.isEmpty() ? null : nextKey;
+            this.evaluated = evaluated;
+        }
+
+        public boolean hasMore() {
+            return nextKey != null;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.citystream.api;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * In-process read-through caches for the aggregate endpoints.
+ *
+ * Each cache is size-bounded and expires entries after its TTL. Entries read
+ * after the refresh interval are reloaded in the background while the old
+ * value is still served, so hot keys are refreshed before they expire.
+ * Hit/miss/load-time statistics are published to Micrometer under the cache
+ * name.
+ *
+ * A cache may also be given a version function, a cheap batched read of the
+ * data's last_updated. Every check interval, on a thread of its own, keys not
+ * read within their refresh interval are invalidated, and the versions of the
+ * remaining keys are read in one call; only keys whose data moved on are
+ * refreshed. Refreshing counts as a write to Caffeine, so reads are tracked
+ * here: without that, refreshed entries would never expire and idle keys
+ * would be polled forever. Reloads run on a small bounded pool of their own;
+ * when it is full the refresh is skipped until the next check.
+ */
+@Component
+public class ResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long maxSize;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final ScheduledExecutorService versionChecker;
+    private final Counter refreshes;
+    private final Counter skippedRefreshes;
+    private final Counter idleInvalidations;
+    private final List<RefreshingCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    public ResponseCache(MeterRegistry meterRegistry,
+                         @Value("${citystream.cache.max-size:1000}") long maxSize,
+                         @Value("${citystream.cache.refresh-threads:2}") int refreshThreads,
+                         @Value("${citystream.cache.refresh-queue:100}") int refreshQueue,
+                         @Value("${citystream.cache.check-interval-ms:5000}") long checkIntervalMs) {
+        this.meterRegistry = meterRegistry;
+        this.maxSize = maxSize;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(refreshQueue), runnable -> {
+                Thread thread = new Thread(runnable, "cache-refresh-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+        // Not the shared @Scheduled thread: version reads block on DynamoDB
+        this.versionChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-version-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        versionChecker.scheduleWithFixedDelay(this::refreshChanged,
+            checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("citystream.api.cache.refresh.queued", refreshExecutor, pool -> pool.getQueue().size())
+            .description("Cache reloads waiting for a refresh thread")
+            .register(meterRegistry);
+        this.refreshes = Counter.builder("citystream.api.cache.refresh.triggered")
+            .description("Cache entries refreshed because their data changed")
+            .register(meterRegistry);
+        this.skippedRefreshes = Counter.builder("citystream.api.cache.refresh.skipped")
+            .description("Data-driven refreshes skipped because the refresh pool was full")
+            .register(meterRegistry);
+        this.idleInvalidations = Counter.builder("citystream.api.cache.refresh.idle")
+            .description("Cache entries dropped instead of refreshed because nobody read them")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Create a cache that reloads entries older than refreshAfter on access and
+     * drops entries older than ttl. If versions is given, read keys are also
+     * refreshed as soon as versions(keys) reports a newer version than the one
+     * read when they were loaded; keys missing from its result are left alone.
+     */
+    public <K, V> RefreshingCache<K, V> create(String name, Duration ttl, Duration refreshAfter,
+                                               CacheLoader<K, V> loader,
+                                               Function<Collection<K>, Map<K, String>> versions) {
+        RefreshingCache<K, V> cache = new RefreshingCache<>(name, refreshAfter, loader, versions, ttl);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.cache, name);
+        caches.add(cache);
+        logger.info("Response cache {}: ttl={}, refreshAfter={}, maxSize={}, versioned={}",
+            name, ttl, refreshAfter, maxSize, versions != null);
+        return cache;
+    }
+
+    void refreshChanged() {
+        for (RefreshingCache<?, ?> cache : caches) {
+            try {
+                cache.refreshChanged();
+            } catch (RuntimeException e) {
+                logger.debug("Version check of {} failed: {}", cache.name, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        versionChecker.shutdownNow();
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * A loading cache that remembers when each key was last read
+     */
+    public final class RefreshingCache<K, V> {
+        private final String name;
+        private final long idleAfterMs;
+        private final Function<Collection<K>, Map<K, String>> versions;
+        private final LoadingCache<K, V> cache;
+        private final Map<K, Long> lastReadMs = new ConcurrentHashMap<>();
+        // Version read just before each entry was last loaded
+        private final Map<K, String> loadedVersions = new ConcurrentHashMap<>();
+
+        private RefreshingCache(String name, Duration refreshAfter, CacheLoader<K, V> loader,
+                                Function<Collection<K>, Map<K, String>> versions, Duration ttl) {
+            this.name = name;
+            this.idleAfterMs = refreshAfter.toMillis();
+            this.versions = versions;
+            this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refreshAfter)
+                .executor(refreshExecutor)
+                .recordStats()
+                .build(versions == null ? loader : tracking(loader));
+        }
+
+        public V get(K key) {
+            lastReadMs.put(key, System.currentTimeMillis());
+            return cache.get(key);
+        }
+
+        private CacheLoader<K, V> tracking(CacheLoader<K, V> loader) {
+            return key -> {
+                // Read first, so data written during the load triggers another refresh
+                String current = versions.apply(List.of(key)).get(key);
+                V value = loader.load(key);
+                if (current == null) {
+                    loadedVersions.remove(key);
+                } else {
+                    loadedVersions.put(key, current);
+                }
+                return value;
+            };
+        }
+
+        private void refreshChanged() {
+            if (versions == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            List<K> read = new ArrayList<>();
+            for (K key : cache.asMap().keySet()) {
+                Long readAt = lastReadMs.get(key);
+                if (readAt == null || now - readAt > idleAfterMs) {
+                    cache.invalidate(key);
+                    idleInvalidations.increment();
+                } else {
+                    read.add(key);
+                }
+            }
+            lastReadMs.values().removeIf(readAt -> now - readAt > idleAfterMs);
+            loadedVersions.keySet().retainAll(cache.asMap().keySet());
+            if (read.isEmpty()) {
+                return;
+            }
+
+            Map<K, String> current = versions.apply(read);
+            for (K key : read) {
+                String version = current.get(key);
+                String loaded = loadedVersions.get(key);
+                if (version == null || (loaded != null && version.compareTo(loaded) <= 0)) {
+                    continue;
+                }
+                try {
+                    cache.refresh(key);
+                    refreshes.increment();
+                } catch (RejectedExecutionException e) {
+                    skippedRefreshes.increment();
+                }
+            }
+        }
+    }
+}
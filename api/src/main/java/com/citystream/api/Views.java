@@ -0,0 +1,65 @@
+package com.citystream.api;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * Decoding and writing helpers shared by the typed response views
+ */
+final class Views {
+
+    private Views() {
+    }
+
+    static String string(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null ? null : value.getS();
+    }
+
+    static long number(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null || value.getN() == null ? 0 : Long.parseLong(value.getN());
+    }
+
+    static Long optionalNumber(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null || value.getN() == null ? null : Long.valueOf(value.getN());
+    }
+
+    static String string(Map<String, Object> event, String name, String fallback) {
+        Object value = event.get(name);
+        return value == null ? fallback : String.valueOf(value);
+    }
+
+    /**
+     * Epoch millis of an event timestamp ("2024-01-01T10:00:00Z") or a Spark
+     * timestamp string ("2024-01-01 10:00:00.0", UTC); 0 when unparseable
+     */
+    static long epochMillis(String timestamp) {
+        if (timestamp == null) {
+            return 0;
+        }
+        try {
+            if (timestamp.endsWith("Z")) {
+                return Instant.parse(timestamp).toEpochMilli();
+            }
+            return LocalDateTime.parse(timestamp.replace(' ', 'T')).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // Absent attributes are omitted, as they were when items were copied into maps
+    static void writeString(JsonGenerator gen, String name, String value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(name, value);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.citystream.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Cities beyond max-cities get no event ring, but their alerts still belong
+ * in the cross-city alert page
+ */
+class MaterializedViewTest {
+
+    @Test
+    void keepsAlertsOfUntrackedCities() {
+        MaterializedView view = new MaterializedView(mock(CityEventsTail.class), new SimpleMeterRegistry(),
+            true, 10, 1, 12, 100);
+        long now = System.currentTimeMillis();
+
+        view.onEvent(event("1", "Berlin", "high"), now);
+        view.onEvent(event("2", "Paris", "critical"), now + 1);
+        view.onEvent(event("3", "Paris", "low"), now + 2);
+
+        assertTrue(view.recentEvents("Paris", 10).isEmpty(), "Paris is over the city cap");
+        List<AlertView> all = view.recentAlerts(null, now, 10).orElseThrow();
+        assertEquals(List.of("Paris", "Berlin"), all.stream().map(alert -> alert.city).toList());
+        assertEquals(1, view.recentAlerts("Paris", now, 10).orElseThrow().size());
+    }
+
+    private static Map<String, Object> event(String id, String city, String severity) {
+        return Map.of("event_id", id, "city", city, "event_type", "traffic", "severity", severity,
+            "timestamp", "2026-10-18T12:00:00Z");
+    }
+}
@@ -0,0 +1,105 @@
+package com.citystream.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Version-driven refresh: only keys read within the refresh interval are
+ * checked, idle keys are dropped instead of polled
+ */
+class ResponseCacheTest {
+
+    private static final Duration REFRESH_AFTER = Duration.ofMillis(200);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, String> versions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    private final List<Collection<String>> versionChecks = new CopyOnWriteArrayList<>();
+
+    private ResponseCache responseCache;
+    private ResponseCache.RefreshingCache<String, Integer> cache;
+
+    @BeforeEach
+    void setUp() {
+        // Long check interval: the test drives refreshChanged() itself
+        responseCache = new ResponseCache(meterRegistry, 100, 1, 10, 60_000);
+        cache = responseCache.create("test", Duration.ofMinutes(1), REFRESH_AFTER,
+            key -> loads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet(),
+            keys -> {
+                versionChecks.add(List.copyOf(keys));
+                Map<String, String> current = new HashMap<>();
+                keys.forEach(key -> {
+                    if (versions.containsKey(key)) {
+                        current.put(key, versions.get(key));
+                    }
+                });
+                return current;
+            });
+    }
+
+    @AfterEach
+    void tearDown() {
+        responseCache.shutdown();
+    }
+
+    @Test
+    void refreshesReadKeysWhoseVersionMovedOn() throws Exception {
+        versions.put("a", "1");
+        versions.put("b", "1");
+        assertEquals(1, cache.get("a"));
+        assertEquals(1, cache.get("b"));
+        versionChecks.clear();
+
+        versions.put("a", "2");
+        responseCache.refreshChanged();
+
+        // One batched read for both keys, then the reload of a reads its own version
+        awaitLoads("a", 2);
+        assertEquals(List.of(List.of("a", "b"), List.of("a")), sorted(versionChecks));
+        assertEquals(1, loads.get("b").get());
+        assertEquals(1.0, meterRegistry.counter("citystream.api.cache.refresh.triggered").count());
+    }
+
+    @Test
+    void invalidatesIdleKeysInsteadOfRefreshingThem() throws Exception {
+        versions.put("a", "1");
+        assertEquals(1, cache.get("a"));
+        versionChecks.clear();
+
+        Thread.sleep(REFRESH_AFTER.toMillis() * 2);
+        versions.put("a", "2");
+        responseCache.refreshChanged();
+
+        assertEquals(List.of(), versionChecks, "idle keys are not version-checked");
+        assertEquals(1, loads.get("a").get());
+        assertEquals(1.0, meterRegistry.counter("citystream.api.cache.refresh.idle").count());
+
+        // Dropped, so the next read loads afresh
+        assertEquals(2, cache.get("a"));
+    }
+
+    private static List<List<String>> sorted(List<Collection<String>> checks) {
+        return checks.stream().map(keys -> keys.stream().sorted().toList()).toList();
+    }
+
+    private void awaitLoads(String key, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loads.get(key).get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, loads.get(key).get());
+    }
+}
@@ -0,0 +1,87 @@
+package com.citystream.api;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * /stats before the consumer has written its #GLOBAL counters, with more
+ * concurrent requests than the DynamoDB executor has threads
+ */
+class StatsFallbackTest {
+
+    private static final int THREADS = 2;
+    private static final int REQUESTS = 20;
+
+    private final CountDownLatch slowQueries = new CountDownLatch(1);
+
+    private DynamoDBExecutor executor;
+    private ResponseCache responseCache;
+    private CityStreamApiApplication api;
+
+    @BeforeEach
+    void setUp() {
+        AmazonDynamoDB client = mock(AmazonDynamoDB.class);
+        when(client.getItem(any(GetItemRequest.class))).thenReturn(new GetItemResult());
+        when(client.query(any(QueryRequest.class))).thenAnswer(invocation -> {
+            // Hold the first load until every request is queued, so the pool is saturated
+            slowQueries.await(5, TimeUnit.SECONDS);
+            return new QueryResult().withItems(List.of()).withCount(3);
+        });
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        executor = new DynamoDBExecutor(meterRegistry, THREADS, REQUESTS);
+        api = new CityStreamApiApplication(client);
+        ReflectionTestUtils.setField(api, "dynamoDBExecutor", executor);
+        responseCache = new ResponseCache(meterRegistry, 100, 1, 10, 60_000);
+        ReflectionTestUtils.setField(api, "responseCache", responseCache);
+        for (String cache : List.of("summary", "cities", "stats")) {
+            ReflectionTestUtils.setField(api, cache + "Ttl", Duration.ofSeconds(30));
+            ReflectionTestUtils.setField(api, cache + "RefreshAfter", Duration.ofSeconds(10));
+        }
+        api.initCaches();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        responseCache.shutdown();
+    }
+
+    @Test
+    void saturatedPoolStillAnswersFromIndexes() throws Exception {
+        List<CompletableFuture<ResponseEntity<Map<String, Object>>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(api.getStats());
+        }
+        slowQueries.countDown();
+
+        for (CompletableFuture<ResponseEntity<Map<String, Object>>> response : responses) {
+            ResponseEntity<Map<String, Object>> stats = response.get(10, TimeUnit.SECONDS);
+            assertEquals(200, stats.getStatusCode().value());
+            assertEquals(3L, stats.getBody().get("high_severity_alerts"));
+            assertEquals(3L, stats.getBody().get("critical_alerts"));
+        }
+    }
+}
@@ -56,6 +56,11 @@ aws dynamodb delete-table \
     --table-name citystream-alerts \
     --region $AWS_REGION 2>/dev/null || echo "  Table already deleted or doesn't exist"
 
+echo "Deleting citystream-city-totals..."
+aws dynamodb delete-table \
+    --table-name citystream-city-totals \
+    --region $AWS_REGION 2>/dev/null || echo "  Table already deleted or doesn't exist"
+
 echo -e "${GREEN}✓ All DynamoDB tables deleted${NC}"
 
 # Step 3: Optional - Stop EC2 instance
@@ -0,0 +1,161 @@
+package com.citystream.consumer;
+
+import org.apache.spark.api.java.function.ForeachPartitionFunction;
+import org.apache.spark.api.java.function.VoidFunction2;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.StreamingQueryManager;
+import org.apache.spark.sql.streaming.StreamingQueryProgress;
+import org.apache.spark.storage.StorageLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.citystream.consumer.SparkDynamoDBConsumer.*;
+
+/**
+ * foreachBatch sink for the windowed aggregations query in multi-query mode.
+ *
+ * How often a window is written depends on the emission mode the query runs
+ * with (see EmitMode). Every batch is written with DynamoDBWriter, and the
+ * driver counts the writes per window, so the log shows what each mode costs:
+ * writes per closed window and how many events each write folded in.
+ *
+ * A window is closed once the query's event-time watermark has passed its end:
+ * Spark drops its state then, so no later batch can write it again. The
+ * watermark is read from the query's last progress, which trails the one the
+ * current batch runs with by a batch, so windows are closed a batch late at worst.
+ * The query is looked up through the session that started it; the session
+ * passed to foreachBatch is a per-query clone that does not list it.
+ */
+class AggregationEmitter implements VoidFunction2<Dataset<Row>, Long> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AggregationEmitter.class);
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * When a (window, city, event_type) row is written to DynamoDB
+     */
+    enum EmitMode {
+        // Update output mode: every micro-batch that touches a window rewrites it
+        UPDATE("update"),
+        // Update output mode on a processing-time trigger: at most one write per window
+        // per interval, always with the latest counts
+        RATE_LIMITED("update"),
+        // Append output mode: one write per window, once the watermark passes its end
+        FINALIZE("append");
+
+        final String outputMode;
+
+        EmitMode(String outputMode) {
+            this.outputMode = outputMode;
+        }
+
+        static EmitMode parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final DynamoDBSinkConfig sinkConfig;
+    private final EmitMode mode;
+    private final transient StreamingQueryManager queries;
+
+    // Driver-side bookkeeping; foreachBatch runs on the driver
+    private final Map<String, WindowWrites> openWindows = new HashMap<>();
+    private long totalWrites;
+    private long closedWindows;
+    private long closedWrites;
+    private long closedEvents;
+
+    AggregationEmitter(DynamoDBSinkConfig sinkConfig, EmitMode mode, StreamingQueryManager queries) {
+        this.sinkConfig = sinkConfig;
+        this.mode = mode;
+        this.queries = queries;
+    }
+
+    @Override
+    public void call(Dataset<Row> batch, Long batchId) {
+        long epochId = batchId;
+
+        batch.persist(StorageLevel.MEMORY_AND_DISK());
+        try {
+            List<Row> rows = batch.select("partition_key", "window_end", "event_count").collectAsList();
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            DynamoDBWriter writer = new DynamoDBWriter(AGGREGATIONS_TABLE, AGGREGATIONS_KEY, sinkConfig);
+            batch.foreachPartition(
+                (ForeachPartitionFunction<Row>) partition -> writer.writePartition(partition, epochId));
+
+            record(rows, watermarkMs(batch));
+            logger.info("Aggregations ({}) batch {}: wrote {} windows; {} writes total; "
+                    + "closed windows: {}, {} writes/window, {} events/write",
+                mode, batchId, rows.size(), totalWrites, closedWindows,
+                String.format("%.2f", writesPerClosedWindow()), String.format("%.1f", eventsPerClosedWrite()));
+        } finally {
+            batch.unpersist();
+        }
+    }
+
+    long getTotalWrites() { return totalWrites; }
+
+    long getClosedWindows() { return closedWindows; }
+
+    double writesPerClosedWindow() {
+        return closedWindows == 0 ? 0 : closedWrites / (double) closedWindows;
+    }
+
+    double eventsPerClosedWrite() {
+        return closedWrites == 0 ? 0 : closedEvents / (double) closedWrites;
+    }
+
+    private void record(List<Row> rows, long watermarkMs) {
+        for (Row row : rows) {
+            long windowEndMs = row.<Timestamp>getAs("window_end").getTime();
+            WindowWrites window = openWindows.computeIfAbsent(row.getAs("partition_key"),
+                key -> new WindowWrites());
+            window.writes++;
+            window.eventCount = row.<Long>getAs("event_count");
+            window.windowEndMs = windowEndMs;
+            totalWrites++;
+        }
+
+        Iterator<WindowWrites> open = openWindows.values().iterator();
+        while (open.hasNext()) {
+            WindowWrites window = open.next();
+            if (window.windowEndMs <= watermarkMs) {
+                closedWindows++;
+                closedWrites += window.writes;
+                closedEvents += window.eventCount;
+                open.remove();
+            }
+        }
+    }
+
+    /**
+     * Event-time watermark of the query running this batch, or Long.MIN_VALUE
+     * before the first progress that reports one
+     */
+    private long watermarkMs(Dataset<Row> batch) {
+        StreamingQuery query = queries.get(runId(batch));
+        StreamingQueryProgress progress = query == null ? null : query.lastProgress();
+        String watermark = progress == null ? null : progress.eventTime().get("watermark");
+        return watermark == null ? Long.MIN_VALUE : Instant.parse(watermark).toEpochMilli();
+    }
+
+    private static final class WindowWrites {
+        long writes;
+        long eventCount;
+        long windowEndMs;
+    }
+}
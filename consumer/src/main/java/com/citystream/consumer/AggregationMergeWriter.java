@@ -0,0 +1,136 @@
+package com.citystream.consumer;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
+import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import org.apache.spark.TaskContext;
+import org.apache.spark.sql.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Merges per-micro-batch window counts into the aggregations table with
+ * atomic UpdateItem increments.
+ *
+ * Each item remembers the last batch merged into it per query run (see
+ * SparkDynamoDBConsumer.runId), and updates are conditional on that id being
+ * older than the current batch, so a batch that is replayed after a failure
+ * does not count the same events twice. Batch ids start again at 0 under a new
+ * checkpoint, so they are only compared within one run.
+ *
+ * max_severity cannot be expressed as an increment, so it is derived from the
+ * merged counters returned by the update and rewritten only when it changes,
+ * which happens at most once per severity level per window.
+ */
+class AggregationMergeWriter implements Serializable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AggregationMergeWriter.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String UPDATE_EXPRESSION =
+        "SET #window_start = :window_start, #window_end = :window_end, #city = :city, " +
+        "#event_type = :event_type, #last_updated = :last_updated, #run_batch_id = :batch_id " +
+        "ADD #event_count :event_count, #low_count :low_count, #medium_count :medium_count, " +
+        "#high_count :high_count, #critical_count :critical_count, #severity_score :severity_score";
+
+    private static final String CONDITION_EXPRESSION =
+        "attribute_not_exists(#run_batch_id) OR #run_batch_id < :batch_id";
+
+    private final String tableName;
+    private final DynamoDBSinkConfig config;
+
+    AggregationMergeWriter(String tableName, DynamoDBSinkConfig config) {
+        this.tableName = tableName;
+        this.config = config;
+    }
+
+    void writePartition(Iterator<Row> rows, String runId, long batchId) {
+        Table table = DynamoDBClientRegistry.get(config).getTable(tableName);
+        int merged = 0;
+        int skipped = 0;
+
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            try {
+                Item updated = table.updateItem(toUpdate(row, runId, batchId)).getItem();
+                merged++;
+                
+                String maxSeverity = maxSeverity(updated);
+                if (maxSeverity != null && !maxSeverity.equals(updated.getString("max_severity"))) {
+                    table.updateItem(new UpdateItemSpec()
+                        .withPrimaryKey("partition_key", row.<String>getAs("partition_key"))
+                        .withUpdateExpression("SET max_severity = :max_severity")
+                        .withValueMap(new ValueMap().withString(":max_severity", maxSeverity)));
+                }
+            } catch (ConditionalCheckFailedException e) {
+                // Already merged by an earlier attempt of this batch in the same run
+                skipped++;
+            } catch (Exception e) {
+                logger.error("Failed to merge aggregation into {}: {}", tableName, e.getMessage(), e);
+                throw new RuntimeException("DynamoDB write failed", e);
+            }
+        }
+
+        if (merged > 0 || skipped > 0) {
+            logger.info("Merged {} aggregations into {} for partition {} of batch {} ({} already applied)",
+                merged, tableName, TaskContext.getPartitionId(), batchId, skipped);
+        }
+    }
+
+    private static UpdateItemSpec toUpdate(Row row, String runId, long batchId) {
+        return new UpdateItemSpec()
+            .withPrimaryKey("partition_key", row.<String>getAs("partition_key"))
+            .withUpdateExpression(UPDATE_EXPRESSION)
+            .withConditionExpression(CONDITION_EXPRESSION)
+            .withReturnValues(ReturnValue.ALL_NEW)
+            .withNameMap(new NameMap()
+                .with("#window_start", "window_start")
+                .with("#window_end", "window_end")
+                .with("#city", "city")
+                .with("#event_type", "event_type")
+                .with("#last_updated", "last_updated")
+                .with("#run_batch_id", SparkDynamoDBConsumer.lastBatchAttribute(runId))
+                .with("#event_count", "event_count")
+                .with("#low_count", "low_count")
+                .with("#medium_count", "medium_count")
+                .with("#high_count", "high_count")
+                .with("#critical_count", "critical_count")
+                .with("#severity_score", "severity_score"))
+            .withValueMap(new ValueMap()
+                .withString(":window_start", row.getAs("window_start").toString())
+                .withString(":window_end", row.getAs("window_end").toString())
+                .withString(":city", row.getAs("city"))
+                .withString(":event_type", row.getAs("event_type"))
+                .withString(":last_updated", row.getAs("last_updated").toString())
+                .withLong(":batch_id", batchId)
+                .withLong(":event_count", row.<Long>getAs("event_count"))
+                .withLong(":low_count", row.<Long>getAs("low_count"))
+                .withLong(":medium_count", row.<Long>getAs("medium_count"))
+                .withLong(":high_count", row.<Long>getAs("high_count"))
+                .withLong(":critical_count", row.<Long>getAs("critical_count"))
+                .withLong(":severity_score", row.<Long>getAs("severity_score")));
+    }
+
+    /**
+     * Highest severity level with a non-zero counter, or null if there is none
+     */
+    private static String maxSeverity(Item item) {
+        List<String> levels = SparkDynamoDBConsumer.SEVERITY_LEVELS;
+        for (int i = levels.size() - 1; i >= 0; i--) {
+            String attribute = levels.get(i) + "_count";
+            if (item.isPresent(attribute) && item.getLong(attribute) > 0) {
+                return levels.get(i);
+            }
+        }
+        return null;
+    }
+}
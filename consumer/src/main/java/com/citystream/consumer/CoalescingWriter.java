@@ -0,0 +1,118 @@
+package com.citystream.consumer;
+
+import org.apache.spark.api.java.function.ForeachPartitionFunction;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.api.java.function.VoidFunction2;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.expressions.Window;
+import org.apache.spark.sql.expressions.WindowSpec;
+import org.apache.spark.storage.StorageLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+import static com.citystream.consumer.SparkDynamoDBConsumer.*;
+import static org.apache.spark.sql.functions.*;
+
+/**
+ * Writes a projection of each micro-batch to one DynamoDB table with a single
+ * row per primary key. The projection carries the Kafka position of each row
+ * (kafka_partition, kafka_offset), which is dropped before writing.
+ *
+ * DynamoDBBatchWriter only dedups within one partition's buffer, so a key that
+ * occurs in several partitions of a batch (or in one partition after a flush)
+ * was put once per occurrence, each put overwriting the last. Rows are first
+ * grouped by the table's key and only the latest version is kept: the highest
+ * Kafka offset, which orders the versions of one event since the producer keys
+ * records by city and event type. Exact duplicates are dropped the same way.
+ *
+ * Used as the foreachBatch sink of a query in multi-query mode, or through
+ * write() from MicroBatchDispatcher. Rows in and writes out are counted on the
+ * driver and logged per batch. Writes out is the row count of the coalesced
+ * batch, taken before writing rather than summed in the tasks, so task
+ * retries and speculative attempts do not inflate it.
+ */
+class CoalescingWriter implements VoidFunction2<Dataset<Row>, Long> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingWriter.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String VERSION = "_version";
+
+    private final String tableName;
+    private final String[] keyAttributes;
+    private final Function<Dataset<Row>, Dataset<Row>> projection;
+    private final DynamoDBSinkConfig sinkConfig;
+
+    // Driver-side totals; foreachBatch runs on the driver
+    private long rowsIn;
+    private long writesOut;
+
+    CoalescingWriter(String tableName, String[] keyAttributes,
+                     Function<Dataset<Row>, Dataset<Row>> projection, DynamoDBSinkConfig sinkConfig) {
+        this.tableName = tableName;
+        this.keyAttributes = keyAttributes;
+        this.projection = projection;
+        this.sinkConfig = sinkConfig;
+    }
+
+    @Override
+    public void call(Dataset<Row> batch, Long batchId) throws Exception {
+        batch.persist(StorageLevel.MEMORY_AND_DISK());
+        try {
+            write(batch, batchId);
+        } finally {
+            batch.unpersist();
+        }
+    }
+
+    /**
+     * Coalesce and write one batch of parsed events; the caller should have it cached
+     */
+    void write(Dataset<Row> events, long batchId) throws Exception {
+        Dataset<Row> rows = projection.call(events);
+        long batchRowsIn = rows.count();
+        if (batchRowsIn == 0) {
+            return;
+        }
+
+        // Cached so the count and the write share one shuffle
+        Dataset<Row> latest = latestPerKey(rows).persist(StorageLevel.MEMORY_AND_DISK());
+        try {
+            long batchWritesOut = latest.count();
+            DynamoDBWriter writer = new DynamoDBWriter(tableName, keyAttributes, sinkConfig);
+            latest.foreachPartition((ForeachPartitionFunction<Row>) partition ->
+                writer.writePartition(partition, batchId));
+
+            rowsIn += batchRowsIn;
+            writesOut += batchWritesOut;
+            logger.info("{} batch {}: {} rows coalesced into {} writes; {} rows in, {} writes out total",
+                tableName, batchId, batchRowsIn, batchWritesOut, rowsIn, writesOut);
+        } finally {
+            latest.unpersist();
+        }
+    }
+
+    long getRowsIn() { return rowsIn; }
+
+    long getWritesOut() { return writesOut; }
+
+    /**
+     * The latest version of each key. A key shared by different city/event type
+     * streams (alerts are keyed by city and timestamp) resolves to the highest
+     * Kafka partition, so a replayed batch picks the same row.
+     */
+    private Dataset<Row> latestPerKey(Dataset<Row> rows) {
+        WindowSpec latestFirst = Window
+            .partitionBy(Arrays.stream(keyAttributes).map(key -> col(key)).toArray(Column[]::new))
+            .orderBy(col("kafka_partition").desc(), col("kafka_offset").desc());
+        return rows
+            .withColumn(VERSION, row_number().over(latestFirst))
+            .filter(col(VERSION).equalTo(1))
+            .drop(VERSION, "kafka_partition", "kafka_offset");
+    }
+}
@@ -0,0 +1,123 @@
+package com.citystream.consumer;
+
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffers items for one DynamoDB table and writes them with BatchWriteItem.
+ * A batch is flushed when it reaches the configured size or when the oldest
+ * buffered item has waited longer than the flush interval. Items rejected as
+ * UnprocessedItems are retried with exponential backoff.
+ *
+ * Not thread-safe: one instance is used by a single partition task.
+ */
+class DynamoDBBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBBatchWriter.class);
+
+    private final DynamoDB dynamoDB;
+    private final String tableName;
+    private final String[] keyAttributes;
+    private final DynamoDBSinkConfig config;
+
+    // Keyed by primary key: BatchWriteItem rejects two puts for the same key in one call
+    private final Map<String, Item> buffer = new LinkedHashMap<>();
+    private long oldestBufferedAtMs;
+
+    private long itemsWritten;
+    private long batchRequests;
+    private long retryRequests;
+
+    DynamoDBBatchWriter(DynamoDB dynamoDB, String tableName, String[] keyAttributes,
+                        DynamoDBSinkConfig config) {
+        this.dynamoDB = dynamoDB;
+        this.tableName = tableName;
+        this.keyAttributes = keyAttributes;
+        this.config = config;
+    }
+
+    void add(Item item) {
+        long now = System.currentTimeMillis();
+        if (buffer.isEmpty()) {
+            oldestBufferedAtMs = now;
+        }
+        buffer.put(primaryKey(item), item);
+
+        if (buffer.size() >= config.getBatchSize()
+                || now - oldestBufferedAtMs >= config.getFlushIntervalMs()) {
+            flush();
+        }
+    }
+
+    void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        int size = buffer.size();
+        TableWriteItems writeItems = new TableWriteItems(tableName)
+            .withItemsToPut(buffer.values());
+
+        BatchWriteItemOutcome outcome = dynamoDB.batchWriteItem(writeItems);
+        batchRequests++;
+
+        Map<String, List<WriteRequest>> unprocessed = outcome.getUnprocessedItems();
+        int attempt = 0;
+        while (unprocessed != null && !unprocessed.isEmpty()) {
+            if (attempt >= config.getMaxRetries()) {
+                throw new RuntimeException(String.format(
+                    "DynamoDB batch write to %s left %d unprocessed items after %d retries",
+                    tableName, countRequests(unprocessed), attempt));
+            }
+            backoff(attempt++);
+            logger.debug("Retrying {} unprocessed items for {} (attempt {})",
+                countRequests(unprocessed), tableName, attempt);
+
+            outcome = dynamoDB.batchWriteItemUnprocessed(unprocessed);
+            retryRequests++;
+            unprocessed = outcome.getUnprocessedItems();
+        }
+
+        itemsWritten += size;
+        buffer.clear();
+    }
+
+    long getItemsWritten() { return itemsWritten; }
+
+    long getBatchRequests() { return batchRequests; }
+
+    long getRetryRequests() { return retryRequests; }
+
+    int getBufferedCount() { return buffer.size(); }
+
+    private String primaryKey(Item item) {
+        StringBuilder key = new StringBuilder();
+        for (String attribute : keyAttributes) {
+            key.append(item.get(attribute)).append('\u0000');
+        }
+        return key.toString();
+    }
+
+    private void backoff(int attempt) {
+        long delayMs = config.getRetryBackoffMs() << Math.min(attempt, 10);
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying DynamoDB batch write", e);
+        }
+    }
+
+    private static int countRequests(Map<String, List<WriteRequest>> requests) {
+        return requests.values().stream().mapToInt(List::size).sum();
+    }
+}
@@ -0,0 +1,192 @@
+package com.citystream.consumer;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.TimingInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-JVM registry of DynamoDB clients, keyed by region and endpoint.
+ *
+ * Clients outlive individual epochs so that sink tasks reuse the same
+ * credential chain and HTTP connection pool instead of rebuilding them for
+ * every partition of every micro-batch. Clients are shut down by a JVM
+ * shutdown hook. The first config registered for a key decides its pool
+ * settings.
+ */
+public final class DynamoDBClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBClientRegistry.class);
+
+    private static final long POOL_LOG_INTERVAL_MS = 60_000;
+
+    private static final Map<String, DynamoDB> clients = new ConcurrentHashMap<>();
+    private static final Map<String, PoolStats> poolStats = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DynamoDBClientRegistry::shutdownAll,
+            "dynamodb-client-registry-shutdown"));
+    }
+
+    private DynamoDBClientRegistry() {
+    }
+
+    /**
+     * Get the shared client for the config's region and endpoint, creating it on first use
+     */
+    public static DynamoDB get(DynamoDBSinkConfig config) {
+        return clients.computeIfAbsent(keyOf(config), key -> create(key, config));
+    }
+
+    /**
+     * Snapshot of connection pool statistics for every registered client
+     */
+    public static Map<String, PoolStats> getPoolStats() {
+        return Collections.unmodifiableMap(new HashMap<>(poolStats));
+    }
+
+    static void shutdownAll() {
+        clients.forEach((key, dynamoDB) -> {
+            try {
+                dynamoDB.shutdown();
+            } catch (Exception e) {
+                logger.warn("Failed to shut down DynamoDB client {}", key, e);
+            }
+        });
+        clients.clear();
+    }
+
+    private static String keyOf(DynamoDBSinkConfig config) {
+        String endpoint = config.getEndpoint();
+        return config.getRegion() + "|" + (endpoint == null ? "" : endpoint);
+    }
+
+    private static DynamoDB create(String key, DynamoDBSinkConfig config) {
+        ClientConfiguration clientConfig = new ClientConfiguration()
+            .withMaxConnections(config.getMaxConnections())
+            .withConnectionTTL(config.getConnectionTtlMs())
+            .withConnectionMaxIdleMillis(config.getConnectionMaxIdleMs())
+            .withTcpKeepAlive(config.isTcpKeepAlive());
+
+        PoolStats stats = new PoolStats(config.getMaxConnections());
+        poolStats.put(key, stats);
+
+        AmazonDynamoDBClientBuilder builder = AmazonDynamoDBClientBuilder.standard()
+            .withCredentials(new DefaultAWSCredentialsProviderChain())
+            .withClientConfiguration(clientConfig)
+            .withMetricsCollector(new PoolMetricCollector(key, stats));
+
+        if (config.getEndpoint() != null) {
+            builder.withEndpointConfiguration(
+                new AwsClientBuilder.EndpointConfiguration(config.getEndpoint(), config.getRegion()));
+        } else {
+            builder.withRegion(config.getRegion());
+        }
+
+        AmazonDynamoDB client = builder.build();
+        logger.info("Created shared DynamoDB client {} (maxConnections={}, connectionTtlMs={}, tcpKeepAlive={})",
+            key, config.getMaxConnections(), config.getConnectionTtlMs(), config.isTcpKeepAlive());
+        return new DynamoDB(client);
+    }
+
+    /**
+     * Connection pool utilization observed on requests made through one client
+     */
+    public static class PoolStats {
+        private final int maxConnections;
+        private final LongAdder requests = new LongAdder();
+        private final AtomicLong leased = new AtomicLong();
+        private final AtomicLong available = new AtomicLong();
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicLong maxLeased = new AtomicLong();
+        private final AtomicLong maxPending = new AtomicLong();
+
+        PoolStats(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        void record(long leasedNow, long availableNow, long pendingNow) {
+            requests.increment();
+            leased.set(leasedNow);
+            available.set(availableNow);
+            pending.set(pendingNow);
+            maxLeased.accumulateAndGet(leasedNow, Math::max);
+            maxPending.accumulateAndGet(pendingNow, Math::max);
+        }
+
+        public int getMaxConnections() { return maxConnections; }
+
+        public long getRequests() { return requests.sum(); }
+
+        public long getLeased() { return leased.get(); }
+
+        public long getAvailable() { return available.get(); }
+
+        public long getPending() { return pending.get(); }
+
+        public long getMaxLeased() { return maxLeased.get(); }
+
+        public long getMaxPending() { return maxPending.get(); }
+
+        public double getUtilization() {
+            return maxConnections > 0 ? leased.get() / (double) maxConnections : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("leased=%d/%d (peak %d), available=%d, pending=%d (peak %d), requests=%d",
+                getLeased(), maxConnections, getMaxLeased(), getAvailable(),
+                getPending(), getMaxPending(), getRequests());
+        }
+    }
+
+    /**
+     * Captures the SDK's per-request connection pool counters
+     */
+    private static class PoolMetricCollector extends RequestMetricCollector {
+        private final String key;
+        private final PoolStats stats;
+        private final AtomicLong lastLoggedAtMs = new AtomicLong();
+
+        PoolMetricCollector(String key, PoolStats stats) {
+            this.key = key;
+            this.stats = stats;
+        }
+
+        @Override
+        public void collectMetrics(Request<?> request, Response<?> response) {
+            TimingInfo timing = request.getAWSRequestMetrics().getTimingInfo();
+            stats.record(
+                counter(timing, AWSRequestMetrics.Field.HttpClientPoolLeasedCount),
+                counter(timing, AWSRequestMetrics.Field.HttpClientPoolAvailableCount),
+                counter(timing, AWSRequestMetrics.Field.HttpClientPoolPendingCount));
+
+            long now = System.currentTimeMillis();
+            long last = lastLoggedAtMs.get();
+            if (now - last >= POOL_LOG_INTERVAL_MS && lastLoggedAtMs.compareAndSet(last, now)) {
+                logger.info("DynamoDB connection pool {}: {}", key, stats);
+            }
+        }
+
+        private static long counter(TimingInfo timing, AWSRequestMetrics.Field field) {
+            Number value = timing.getCounter(field.name());
+            return value == null ? 0 : value.longValue();
+        }
+    }
+}
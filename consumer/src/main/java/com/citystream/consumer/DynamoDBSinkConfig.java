@@ -0,0 +1,93 @@
+package com.citystream.consumer;
+
+import java.io.Serializable;
+
+/**
+ * Settings shared by the DynamoDB sinks. Resolved once on the driver from
+ * environment variables and shipped to executors with the writer, so executors
+ * do not depend on their own environment.
+ */
+public class DynamoDBSinkConfig implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // BatchWriteItem accepts at most 25 put/delete requests per call
+    static final int MAX_BATCH_SIZE = 25;
+
+    private final String region;
+    private final String endpoint;
+    private final int maxConnections;
+    private final long connectionTtlMs;
+    private final long connectionMaxIdleMs;
+    private final boolean tcpKeepAlive;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+
+    public DynamoDBSinkConfig(String region, String endpoint, int maxConnections,
+                              long connectionTtlMs, long connectionMaxIdleMs, boolean tcpKeepAlive,
+                              int batchSize, long flushIntervalMs, int maxRetries, long retryBackoffMs) {
+        this.region = region;
+        this.endpoint = endpoint == null || endpoint.isEmpty() ? null : endpoint;
+        this.maxConnections = maxConnections;
+        this.connectionTtlMs = connectionTtlMs;
+        this.connectionMaxIdleMs = connectionMaxIdleMs;
+        this.tcpKeepAlive = tcpKeepAlive;
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    public static DynamoDBSinkConfig fromEnv(String region) {
+        return new DynamoDBSinkConfig(
+            region,
+            System.getenv("DYNAMODB_ENDPOINT"),
+            Integer.parseInt(System.getenv().getOrDefault("DYNAMODB_MAX_CONNECTIONS", "50")),
+            Long.parseLong(System.getenv().getOrDefault("DYNAMODB_CONNECTION_TTL_MS", "300000")),
+            Long.parseLong(System.getenv().getOrDefault("DYNAMODB_CONNECTION_MAX_IDLE_MS", "60000")),
+            Boolean.parseBoolean(System.getenv().getOrDefault("DYNAMODB_TCP_KEEP_ALIVE", "true")),
+            Integer.parseInt(System.getenv().getOrDefault("DYNAMODB_BATCH_SIZE", "25")),
+            Long.parseLong(System.getenv().getOrDefault("DYNAMODB_FLUSH_INTERVAL_MS", "1000")),
+            Integer.parseInt(System.getenv().getOrDefault("DYNAMODB_MAX_RETRIES", "8")),
+            Long.parseLong(System.getenv().getOrDefault("DYNAMODB_RETRY_BACKOFF_MS", "50"))
+        );
+    }
+
+    public String getRegion() { return region; }
+
+    public String getEndpoint() { return endpoint; }
+
+    public int getMaxConnections() { return maxConnections; }
+
+    public long getConnectionTtlMs() { return connectionTtlMs; }
+
+    public long getConnectionMaxIdleMs() { return connectionMaxIdleMs; }
+
+    public boolean isTcpKeepAlive() { return tcpKeepAlive; }
+
+    public int getBatchSize() { return batchSize; }
+
+    public long getFlushIntervalMs() { return flushIntervalMs; }
+
+    public int getMaxRetries() { return maxRetries; }
+
+    public long getRetryBackoffMs() { return retryBackoffMs; }
+
+    @Override
+    public String toString() {
+        return "DynamoDBSinkConfig{" +
+                "region='" + region + '\'' +
+                ", endpoint='" + endpoint + '\'' +
+                ", maxConnections=" + maxConnections +
+                ", connectionTtlMs=" + connectionTtlMs +
+                ", connectionMaxIdleMs=" + connectionMaxIdleMs +
+                ", tcpKeepAlive=" + tcpKeepAlive +
+                ", batchSize=" + batchSize +
+                ", flushIntervalMs=" + flushIntervalMs +
+                ", maxRetries=" + maxRetries +
+                ", retryBackoffMs=" + retryBackoffMs +
+                '}';
+    }
+}
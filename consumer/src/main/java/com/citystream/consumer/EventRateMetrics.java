@@ -0,0 +1,179 @@
+package com.citystream.consumer;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.spark.sql.functions.*;
+
+/**
+ * Event rates per city, event type and severity, published as Prometheus
+ * gauges in text exposition format.
+ *
+ * Each micro-batch is counted per event-time minute, and the counts are merged
+ * on the driver. A watermark trails the latest event time by the allowed
+ * lateness. A minute is closed once the watermark passes its end, and events
+ * for a closed minute are dropped as late. Rates cover the last closed minutes
+ * of the rate window and are divided by the event time they actually cover,
+ * from the oldest minute held to the watermark, so rates are not understated
+ * until a full window has closed. Older minutes are evicted, so state is bounded by
+ * window length times key cardinality. The counts ride along with a query that
+ * already reads every event, so no Kafka source or streaming state is added.
+ *
+ * Updated from foreachBatch, which runs on the driver; render() may be called
+ * from any thread.
+ */
+class EventRateMetrics implements Serializable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventRateMetrics.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final int rateWindowMinutes;
+    private final long latenessMs;
+    private final String file;
+
+    // Event-time minute -> "city\0event_type\0severity" -> events
+    private final TreeMap<Long, Map<String, Long>> minutes = new TreeMap<>();
+    private long maxEventTimeMs = Long.MIN_VALUE;
+    private long lateEvents;
+    private volatile String rendered = "";
+
+    EventRateMetrics(int rateWindowMinutes, long latenessMs, String file) {
+        this.rateWindowMinutes = Math.max(1, rateWindowMinutes);
+        this.latenessMs = latenessMs;
+        this.file = file;
+    }
+
+    /**
+     * Count one batch of parsed events and republish the gauges
+     */
+    void update(Dataset<Row> events) {
+        List<Row> counts = events
+            .filter(col("city").isNotNull().and(col("event_type").isNotNull()).and(col("severity").isNotNull()))
+            .groupBy(window(col("event_time"), "1 minute").getField("start").as("minute"),
+                col("city"), col("event_type"), col("severity"))
+            .agg(count("*").as("event_count"), max("event_time").as("latest"))
+            .collectAsList();
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        // As in Spark, the watermark used for a batch is the one from the batches before it
+        long closedEndMs = closedEndMs();
+        for (Row row : counts) {
+            long minute = row.<Timestamp>getAs("minute").getTime();
+            long eventCount = row.<Long>getAs("event_count");
+            if (minute < closedEndMs) {
+                lateEvents += eventCount;
+                continue;
+            }
+            String series = row.<String>getAs("city") + '\u0000' + row.<String>getAs("event_type")
+                + '\u0000' + row.<String>getAs("severity");
+            minutes.computeIfAbsent(minute, m -> new HashMap<>()).merge(series, eventCount, Long::sum);
+            maxEventTimeMs = Math.max(maxEventTimeMs, row.<Timestamp>getAs("latest").getTime());
+        }
+
+        closedEndMs = closedEndMs();
+        minutes.headMap(closedEndMs - rateWindowMinutes * MINUTE_MS).clear();
+        publish(closedEndMs);
+    }
+
+    /**
+     * The current gauges in Prometheus text exposition format
+     */
+    String render() {
+        return rendered;
+    }
+
+    /**
+     * Start of the oldest minute still open under the watermark
+     */
+    private long closedEndMs() {
+        if (maxEventTimeMs == Long.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        long watermarkMs = maxEventTimeMs - latenessMs;
+        return Math.floorDiv(watermarkMs, MINUTE_MS) * MINUTE_MS;
+    }
+
+    private void publish(long closedEndMs) {
+        Map<String, Long> windowCounts = new TreeMap<>();
+        minutes.headMap(closedEndMs).values()
+            .forEach(counts -> counts.forEach((series, count) -> windowCounts.merge(series, count, Long::sum)));
+
+        // Closed event time from the oldest minute held; eviction caps it at the window length
+        long coveredMs = minutes.isEmpty() ? 0 : Math.max(0, closedEndMs - minutes.firstKey());
+        double windowSeconds = coveredMs / 1000.0;
+        StringBuilder text = new StringBuilder();
+        text.append("# HELP citystream_event_rate Events per second over the last closed event-time minutes\n")
+            .append("# TYPE citystream_event_rate gauge\n");
+        if (coveredMs == 0) {
+            windowCounts.clear();
+        }
+        windowCounts.forEach((series, count) -> {
+            String[] labels = series.split("\u0000", -1);
+            text.append("citystream_event_rate{city=\"").append(escape(labels[0]))
+                .append("\",event_type=\"").append(escape(labels[1]))
+                .append("\",severity=\"").append(escape(labels[2]))
+                .append("\"} ").append(count / windowSeconds).append('\n');
+        });
+        text.append("# HELP citystream_event_rate_window_end_seconds End of the event-time window the rates cover\n")
+            .append("# TYPE citystream_event_rate_window_end_seconds gauge\n")
+            .append("citystream_event_rate_window_end_seconds ").append(closedEndMs / 1000).append('\n')
+            .append("# HELP citystream_event_rate_window_seconds Event time the rates are averaged over\n")
+            .append("# TYPE citystream_event_rate_window_seconds gauge\n")
+            .append("citystream_event_rate_window_seconds ").append((long) windowSeconds).append('\n')
+            .append("# HELP citystream_event_rate_late_events_total Events dropped for arriving after their minute closed\n")
+            .append("# TYPE citystream_event_rate_late_events_total counter\n")
+            .append("citystream_event_rate_late_events_total ").append(lateEvents).append('\n');
+        rendered = text.toString();
+
+        long total = windowCounts.values().stream().mapToLong(Long::longValue).sum();
+        logger.info("Event rates up to {}: {} series, {} events/s, {} minutes held, {} late events",
+            new Timestamp(closedEndMs), windowCounts.size(), String.format("%.2f", coveredMs == 0 ? 0 : total / windowSeconds),
+            minutes.size(), lateEvents);
+        write();
+    }
+
+    /**
+     * Replace the gauges file atomically, so a scraper never reads half of it
+     */
+    private void write() {
+        if (file == null || file.isEmpty()) {
+            return;
+        }
+        try {
+            Path target = Paths.get(file);
+            Path dir = target.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+            Files.write(tmp, rendered.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Metrics must never fail the batch that carries them
+            logger.warn("Failed to write event rate metrics to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,155 @@
+package com.citystream.consumer;
+
+import org.apache.spark.api.plugin.DriverPlugin;
+import org.apache.spark.api.plugin.ExecutorPlugin;
+import org.apache.spark.api.plugin.PluginContext;
+import org.apache.spark.api.plugin.SparkPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings the DynamoDB connection pool statistics of every executor to the
+ * driver, where QueryMetricsExporter serves them.
+ *
+ * Sink tasks run on the executors, each with its own DynamoDBClientRegistry,
+ * so the driver's registry only sees them in local mode. The executor side of
+ * this plugin sends a snapshot of its pools to the driver every
+ * REPORT_INTERVAL_MS over the plugin RPC channel; the driver side keeps the
+ * latest snapshot per executor and forgets executors that stop reporting.
+ * In local mode the tasks run in the driver's executor, reported as "driver".
+ *
+ * Enabled with spark.plugins=com.citystream.consumer.PoolStatsPlugin.
+ */
+public class PoolStatsPlugin implements SparkPlugin {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoolStatsPlugin.class);
+
+    static final long REPORT_INTERVAL_MS = 10_000;
+    private static final long EXPIRE_AFTER_MS = 3 * REPORT_INTERVAL_MS;
+
+    // Driver side: latest report of each executor
+    private static final Map<String, Received> reports = new ConcurrentHashMap<>();
+
+    @Override
+    public DriverPlugin driverPlugin() {
+        return new Driver();
+    }
+
+    @Override
+    public ExecutorPlugin executorPlugin() {
+        return new Executor();
+    }
+
+    /**
+     * Pool snapshots by executor id and client key, from executors that
+     * reported within the last few intervals
+     */
+    static Map<String, Map<String, PoolSnapshot>> executorPools() {
+        long now = System.currentTimeMillis();
+        reports.values().removeIf(received -> now - received.atMs > EXPIRE_AFTER_MS);
+        Map<String, Map<String, PoolSnapshot>> pools = new HashMap<>();
+        reports.forEach((executorId, received) -> pools.put(executorId, received.report.pools));
+        return pools;
+    }
+
+    /**
+     * Connection pool counters of one client at the time of a report
+     */
+    static final class PoolSnapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int maxConnections;
+        final long leased;
+        final long available;
+        final long pending;
+        final long requests;
+
+        PoolSnapshot(DynamoDBClientRegistry.PoolStats stats) {
+            this.maxConnections = stats.getMaxConnections();
+            this.leased = stats.getLeased();
+            this.available = stats.getAvailable();
+            this.pending = stats.getPending();
+            this.requests = stats.getRequests();
+        }
+    }
+
+    private static final class Report implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String executorId;
+        final Map<String, PoolSnapshot> pools;
+
+        Report(String executorId, Map<String, PoolSnapshot> pools) {
+            this.executorId = executorId;
+            this.pools = pools;
+        }
+    }
+
+    private static final class Received {
+        final Report report;
+        // Driver clock, so executor clock skew cannot expire a live executor
+        final long atMs;
+
+        Received(Report report, long atMs) {
+            this.report = report;
+            this.atMs = atMs;
+        }
+    }
+
+    private static final class Driver implements DriverPlugin {
+        @Override
+        public Object receive(Object message) {
+            if (message instanceof Report) {
+                Report report = (Report) message;
+                reports.put(report.executorId, new Received(report, System.currentTimeMillis()));
+            }
+            return null;
+        }
+    }
+
+    private static final class Executor implements ExecutorPlugin {
+        private ScheduledExecutorService reporter;
+
+        @Override
+        public void init(PluginContext context, Map<String, String> extraConf) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "dynamodb-pool-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleWithFixedDelay(() -> report(context),
+                REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void shutdown() {
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
+        }
+
+        private static void report(PluginContext context) {
+            Map<String, PoolSnapshot> pools = new HashMap<>();
+            DynamoDBClientRegistry.getPoolStats().forEach((client, stats) -> pools.put(client, new PoolSnapshot(stats)));
+            if (pools.isEmpty()) {
+                return;
+            }
+            try {
+                context.send(new Report(context.executorID(), Collections.unmodifiableMap(pools)));
+            } catch (IOException | RuntimeException e) {
+                // The next report carries the same counters
+                logger.debug("Failed to send DynamoDB pool stats to the driver: {}", e.getMessage());
+            }
+        }
+    }
+}
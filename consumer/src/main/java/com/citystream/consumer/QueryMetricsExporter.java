@@ -0,0 +1,277 @@
+package com.citystream.consumer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.spark.sql.streaming.SourceProgress;
+import org.apache.spark.sql.streaming.StateOperatorProgress;
+import org.apache.spark.sql.streaming.StreamingQueryListener;
+import org.apache.spark.sql.streaming.StreamingQueryProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the latest progress of every streaming query and serves it, with the
+ * event rate gauges, in Prometheus text format on the driver (GET /metrics).
+ *
+ * Per query: input and processed rows per second, the trigger duration
+ * breakdown (latestOffset, getBatch, addBatch, walCommit, commitOffsets, ...),
+ * the event-time watermark, state operator rows, memory and commit time, and
+ * how far each Kafka source is behind the latest offsets. A query falling
+ * behind shows as processed rows/s below input rows/s and a growing offset lag.
+ * The connection pools of the DynamoDB clients on every executor are
+ * exported too, as reported to the driver by PoolStatsPlugin: leased,
+ * available and pending connections per executor and client, as seen on the
+ * client's last request before the report.
+ *
+ * Progress arrives on Spark's listener bus thread and is rendered on the HTTP
+ * thread, so only immutable progress snapshots are shared between them.
+ */
+class QueryMetricsExporter extends StreamingQueryListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryMetricsExporter.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Kafka source metrics, reported since Spark 3.2
+    private static final String[] KAFKA_LAG_METRICS = {
+        "minOffsetsBehindLatest", "avgOffsetsBehindLatest", "maxOffsetsBehindLatest"
+    };
+
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+    private final Map<String, StreamingQueryProgress> latest = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> active = new ConcurrentHashMap<>();
+    private final Supplier<String> extraMetrics;
+    private HttpServer server;
+
+    QueryMetricsExporter(Supplier<String> extraMetrics) {
+        this.extraMetrics = extraMetrics;
+    }
+
+    /**
+     * Serve /metrics on the given port until stop() is called
+     */
+    void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        logger.info("Serving streaming query metrics on :{}/metrics", port);
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Override
+    public void onQueryStarted(QueryStartedEvent event) {
+        String name = event.name() == null ? event.id().toString() : event.name();
+        names.put(event.id(), name);
+        active.put(name, true);
+    }
+
+    @Override
+    public void onQueryProgress(QueryProgressEvent event) {
+        StreamingQueryProgress progress = event.progress();
+        latest.put(names.getOrDefault(progress.id(), progress.id().toString()), progress);
+    }
+
+    @Override
+    public void onQueryTerminated(QueryTerminatedEvent event) {
+        active.put(names.getOrDefault(event.id(), event.id().toString()), false);
+    }
+
+    /**
+     * All metrics in Prometheus text exposition format
+     */
+    String render() {
+        Map<String, StreamingQueryProgress> queries = new TreeMap<>(latest);
+        Metrics metrics = new Metrics();
+
+        metrics.family("citystream_query_active", "gauge", "1 while the query is running, 0 once it terminated");
+        new TreeMap<>(active).forEach((query, running) ->
+            metrics.sample("citystream_query_active", labels("query", query), running ? 1 : 0));
+
+        metrics.family("citystream_query_batch_id", "gauge", "Id of the last completed micro-batch");
+        queries.forEach((query, progress) ->
+            metrics.sample("citystream_query_batch_id", labels("query", query), progress.batchId()));
+
+        metrics.family("citystream_query_last_progress_timestamp_seconds", "gauge",
+            "Trigger time of the last completed micro-batch");
+        queries.forEach((query, progress) ->
+            metrics.sample("citystream_query_last_progress_timestamp_seconds", labels("query", query),
+                epochSeconds(progress.timestamp())));
+
+        metrics.family("citystream_query_input_rows", "gauge", "Rows read by the last micro-batch");
+        queries.forEach((query, progress) ->
+            metrics.sample("citystream_query_input_rows", labels("query", query), progress.numInputRows()));
+
+        metrics.family("citystream_query_input_rows_per_second", "gauge", "Rate at which rows arrived");
+        queries.forEach((query, progress) ->
+            metrics.sample("citystream_query_input_rows_per_second", labels("query", query),
+                progress.inputRowsPerSecond()));
+
+        metrics.family("citystream_query_processed_rows_per_second", "gauge", "Rate at which rows were processed");
+        queries.forEach((query, progress) ->
+            metrics.sample("citystream_query_processed_rows_per_second", labels("query", query),
+                progress.processedRowsPerSecond()));
+
+        metrics.family("citystream_query_duration_ms", "gauge", "Time spent in each phase of the last trigger");
+        queries.forEach((query, progress) ->
+            new TreeMap<>(progress.durationMs()).forEach((phase, ms) ->
+                metrics.sample("citystream_query_duration_ms", labels("query", query, "phase", phase), ms)));
+
+        metrics.family("citystream_query_watermark_seconds", "gauge", "Event-time watermark");
+        queries.forEach((query, progress) -> {
+            String watermark = progress.eventTime().get("watermark");
+            if (watermark != null) {
+                metrics.sample("citystream_query_watermark_seconds", labels("query", query),
+                    epochSeconds(watermark));
+            }
+        });
+
+        metrics.family("citystream_query_state_rows", "gauge", "Rows held by a state operator");
+        metrics.family("citystream_query_state_rows_updated", "gauge", "State rows updated by the last micro-batch");
+        metrics.family("citystream_query_state_rows_dropped_by_watermark", "gauge",
+            "Late rows dropped by a state operator in the last micro-batch");
+        metrics.family("citystream_query_state_memory_bytes", "gauge", "Memory used by a state operator");
+        metrics.family("citystream_query_state_commit_ms", "gauge", "Time to commit the state checkpoint");
+        queries.forEach((query, progress) -> {
+            StateOperatorProgress[] operators = progress.stateOperators();
+            for (int i = 0; i < operators.length; i++) {
+                StateOperatorProgress state = operators[i];
+                String labels = labels("query", query, "operator", state.operatorName() + "-" + i);
+                metrics.sample("citystream_query_state_rows", labels, state.numRowsTotal());
+                metrics.sample("citystream_query_state_rows_updated", labels, state.numRowsUpdated());
+                metrics.sample("citystream_query_state_rows_dropped_by_watermark", labels,
+                    state.numRowsDroppedByWatermark());
+                metrics.sample("citystream_query_state_memory_bytes", labels, state.memoryUsedBytes());
+                metrics.sample("citystream_query_state_commit_ms", labels, state.commitTimeMs());
+            }
+        });
+
+        metrics.family("citystream_query_kafka_offsets_behind_latest", "gauge",
+            "Offsets between the last processed and the latest available, across topic partitions");
+        queries.forEach((query, progress) -> {
+            for (SourceProgress source : progress.sources()) {
+                Map<String, String> sourceMetrics = source.metrics();
+                for (String name : KAFKA_LAG_METRICS) {
+                    String value = sourceMetrics.get(name);
+                    if (value != null) {
+                        metrics.sample("citystream_query_kafka_offsets_behind_latest",
+                            labels("query", query, "stat", name.substring(0, 3)), Double.parseDouble(value));
+                    }
+                }
+            }
+        });
+
+        metrics.family("citystream_dynamodb_pool_max_connections", "gauge", "Connection pool size of a DynamoDB client");
+        metrics.family("citystream_dynamodb_pool_leased", "gauge", "Connections in use at the last request");
+        metrics.family("citystream_dynamodb_pool_available", "gauge", "Idle pooled connections at the last request");
+        metrics.family("citystream_dynamodb_pool_pending", "gauge", "Requests waiting for a connection at the last request");
+        metrics.family("citystream_dynamodb_requests_total", "counter", "Requests made through a DynamoDB client");
+        new TreeMap<>(PoolStatsPlugin.executorPools()).forEach((executor, pools) ->
+            new TreeMap<>(pools).forEach((client, pool) -> {
+                String labels = labels("executor", executor, "client", client);
+                metrics.sample("citystream_dynamodb_pool_max_connections", labels, pool.maxConnections);
+                metrics.sample("citystream_dynamodb_pool_leased", labels, pool.leased);
+                metrics.sample("citystream_dynamodb_pool_available", labels, pool.available);
+                metrics.sample("citystream_dynamodb_pool_pending", labels, pool.pending);
+                metrics.sample("citystream_dynamodb_requests_total", labels, pool.requests);
+            }));
+
+        return metrics.toString() + extraMetrics.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to render streaming query metrics: {}", e.getMessage(), e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static double epochSeconds(String timestamp) {
+        try {
+            return Instant.parse(timestamp).toEpochMilli() / 1000.0;
+        } catch (DateTimeParseException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String labels(String... namesAndValues) {
+        StringBuilder labels = new StringBuilder("{");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            labels.append(namesAndValues[i]).append("=\"")
+                .append(namesAndValues[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                .append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    /**
+     * Text exposition output; samples must follow their family's HELP/TYPE lines
+     */
+    private static final class Metrics {
+        private final Map<String, StringBuilder> families = new LinkedHashMap<>();
+
+        void family(String name, String type, String help) {
+            families.put(name, new StringBuilder()
+                .append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n'));
+        }
+
+        void sample(String name, String labels, double value) {
+            families.get(name).append(name).append(labels).append(' ').append(format(value)).append('\n');
+        }
+
+        private static String format(double value) {
+            if (Double.isNaN(value)) {
+                return "NaN";
+            }
+            if (Double.isInfinite(value)) {
+                return value > 0 ? "+Inf" : "-Inf";
+            }
+            return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            families.values().forEach(text::append);
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.citystream.consumer;
+
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
+import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import org.apache.spark.TaskContext;
+import org.apache.spark.sql.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * Adds per-micro-batch rollup counts (see SparkDynamoDBConsumer.runningTotals)
+ * to the running totals table with atomic UpdateItem increments.
+ *
+ * Items are keyed by city and scope ("TOTAL" for the whole city,
+ * "TYPE#<event_type>" per event type, "GLOBAL" and "MINUTE#..." for the
+ * all-city counters), so each item receives at most one update per batch.
+ * Rows with a ttl set it on the item so DynamoDB expires it. As with
+ * AggregationMergeWriter, updates are conditional on the last batch id the
+ * item received from the same query run, so a replayed batch is not counted
+ * twice and a new checkpoint does not stall the counters.
+ */
+class RunningTotalsWriter implements Serializable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunningTotalsWriter.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String UPDATE_EXPRESSION =
+        "SET #last_updated = :last_updated, #run_batch_id = :batch_id " +
+        "ADD #event_count :event_count, #low_count :low_count, #medium_count :medium_count, " +
+        "#high_count :high_count, #critical_count :critical_count, #severity_score :severity_score";
+
+    private static final String CONDITION_EXPRESSION =
+        "attribute_not_exists(#run_batch_id) OR #run_batch_id < :batch_id";
+
+    private final String tableName;
+    private final DynamoDBSinkConfig config;
+
+    RunningTotalsWriter(String tableName, DynamoDBSinkConfig config) {
+        this.tableName = tableName;
+        this.config = config;
+    }
+
+    void writePartition(Iterator<Row> rows, String runId, long batchId) {
+        Table table = DynamoDBClientRegistry.get(config).getTable(tableName);
+        int applied = 0;
+        int skipped = 0;
+
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            try {
+                table.updateItem(toUpdate(row, runId, batchId));
+                applied++;
+            } catch (ConditionalCheckFailedException e) {
+                // Already applied by an earlier attempt of this batch in the same run
+                skipped++;
+            } catch (Exception e) {
+                logger.error("Failed to update running totals in {}: {}", tableName, e.getMessage(), e);
+                throw new RuntimeException("DynamoDB write failed", e);
+            }
+        }
+
+        if (applied > 0 || skipped > 0) {
+            logger.info("Applied {} running totals to {} for partition {} of batch {} ({} already applied)",
+                applied, tableName, TaskContext.getPartitionId(), batchId, skipped);
+        }
+    }
+
+    private static UpdateItemSpec toUpdate(Row row, String runId, long batchId) {
+        NameMap names = new NameMap();
+        ValueMap values = new ValueMap();
+        String updateExpression = UPDATE_EXPRESSION;
+        Long ttl = row.getAs("ttl");
+        if (ttl != null) {
+            updateExpression = "SET #ttl = :ttl, " + UPDATE_EXPRESSION.substring("SET ".length());
+            names.with("#ttl", "ttl");
+            values.withLong(":ttl", ttl);
+        }
+
+        return new UpdateItemSpec()
+            .withPrimaryKey("city", row.<String>getAs("city"), "scope", row.<String>getAs("scope"))
+            .withUpdateExpression(updateExpression)
+            .withConditionExpression(CONDITION_EXPRESSION)
+            .withNameMap(names
+                .with("#last_updated", "last_updated")
+                .with("#run_batch_id", SparkDynamoDBConsumer.lastBatchAttribute(runId))
+                .with("#event_count", "event_count")
+                .with("#low_count", "low_count")
+                .with("#medium_count", "medium_count")
+                .with("#high_count", "high_count")
+                .with("#critical_count", "critical_count")
+                .with("#severity_score", "severity_score"))
+            .withValueMap(values
+                .withString(":last_updated", row.getAs("last_updated").toString())
+                .withLong(":batch_id", batchId)
+                .withLong(":event_count", row.<Long>getAs("event_count"))
+                .withLong(":low_count", row.<Long>getAs("low_count"))
+                .withLong(":medium_count", row.<Long>getAs("medium_count"))
+                .withLong(":high_count", row.<Long>getAs("high_count"))
+                .withLong(":critical_count", row.<Long>getAs("critical_count"))
+                .withLong(":severity_score", row.<Long>getAs("severity_score")));
+    }
+}
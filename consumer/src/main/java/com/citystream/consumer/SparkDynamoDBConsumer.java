@@ -1,20 +1,27 @@
 package com.citystream.consumer;
 
-import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
-import com.amazonaws.services.dynamodbv2.document.Table;
+import org.apache.spark.TaskContext;
+import org.apache.spark.api.java.function.ForeachPartitionFunction;
+import org.apache.spark.api.java.function.VoidFunction2;
 import org.apache.spark.sql.*;
+import org.apache.spark.sql.streaming.DataStreamWriter;
 import org.apache.spark.sql.streaming.StreamingQuery;
 import org.apache.spark.sql.streaming.StreamingQueryException;
+import org.apache.spark.sql.streaming.Trigger;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 
 import static org.apache.spark.sql.functions.*;
@@ -36,30 +43,114 @@ public class SparkDynamoDBConsumer {
         System.getenv().getOrDefault("AWS_REGION", "us-east-2");
     private static final String CHECKPOINT_LOCATION = 
         System.getenv().getOrDefault("CHECKPOINT_LOCATION", "/tmp/spark-checkpoint");
+    // "single-source" reads Kafka once and fans out with foreachBatch; default runs one query per sink
+    private static final boolean SINGLE_SOURCE_MODE = 
+        "single-source".equalsIgnoreCase(System.getenv().getOrDefault("CONSUMER_MODE", "multi-query"));
+    // How late (in event time) an event may arrive and still be counted in its window
+    private static final String WATERMARK_DELAY = 
+        System.getenv().getOrDefault("WATERMARK_DELAY", "10 minutes");
+    // update | rate-limited | finalize, see AggregationEmitter.EmitMode (multi-query mode only)
+    private static final String AGGREGATION_EMIT_MODE = 
+        System.getenv().getOrDefault("AGGREGATION_EMIT_MODE", "update");
+    // Trigger interval of the aggregations query in rate-limited mode
+    private static final String AGGREGATION_EMIT_INTERVAL = 
+        System.getenv().getOrDefault("AGGREGATION_EMIT_INTERVAL", "30 seconds");
+    // Event rate gauges: length of the rate window, allowed lateness, and the Prometheus text file they go to
+    private static final int METRICS_RATE_WINDOW_MINUTES = 
+        Integer.parseInt(System.getenv().getOrDefault("METRICS_RATE_WINDOW_MINUTES", "5"));
+    private static final long METRICS_LATENESS_MS = 
+        Long.parseLong(System.getenv().getOrDefault("METRICS_LATENESS_MS", "60000"));
+    private static final String METRICS_FILE = 
+        System.getenv().getOrDefault("METRICS_FILE", "/tmp/citystream-metrics/event_rates.prom");
+    // Driver port serving streaming query metrics in Prometheus text format at /metrics; 0 disables it
+    private static final int METRICS_PORT = 
+        Integer.parseInt(System.getenv().getOrDefault("METRICS_PORT", "9108"));
+    // "hdfs" keeps streaming state on the executor heap; "rocksdb" keeps it in native memory and local disk.
+    // The provider is recorded in the checkpoint, so switching needs a new CHECKPOINT_LOCATION
+    private static final String STATE_STORE_PROVIDER = 
+        System.getenv().getOrDefault("STATE_STORE_PROVIDER", "hdfs");
+    // RocksDB tuning: block cache per state store instance, data block size, open file limit (-1 = unlimited)
+    private static final String ROCKSDB_BLOCK_CACHE_MB = 
+        System.getenv().getOrDefault("ROCKSDB_BLOCK_CACHE_MB", "32");
+    private static final String ROCKSDB_BLOCK_SIZE_KB = 
+        System.getenv().getOrDefault("ROCKSDB_BLOCK_SIZE_KB", "16");
+    private static final String ROCKSDB_MAX_OPEN_FILES = 
+        System.getenv().getOrDefault("ROCKSDB_MAX_OPEN_FILES", "-1");
     
     // DynamoDB table names
-    private static final String RAW_EVENTS_TABLE = "citystream-raw-events";
-    private static final String AGGREGATIONS_TABLE = "citystream-aggregations";
-    private static final String ALERTS_TABLE = "citystream-alerts";
+    static final String RAW_EVENTS_TABLE = "citystream-raw-events";
+    static final String AGGREGATIONS_TABLE = "citystream-aggregations";
+    static final String ALERTS_TABLE = "citystream-alerts";
+    static final String CITY_TOTALS_TABLE = "citystream-city-totals";
     
-    public static void main(String[] args) throws TimeoutException, StreamingQueryException {
+    static final String ROCKSDB_STATE_STORE_PROVIDER =
+        "org.apache.spark.sql.execution.streaming.state.RocksDBStateStoreProvider";
+    
+    // Partition of the city totals table holding all-city counters
+    static final String GLOBAL_TOTALS = "#GLOBAL";
+    // Per-minute counters are only read for the last hour
+    static final long MINUTE_TOTALS_TTL_SECONDS = 2 * 60 * 60;
+    
+    // Severity levels in ascending order; aggregations count each level separately
+    static final List<String> SEVERITY_LEVELS = Arrays.asList("low", "medium", "high", "critical");
+    
+    // Primary key attributes per table (see setup-dynamodb.sh)
+    static final String[] RAW_EVENTS_KEY = {"event_id", "timestamp"};
+    static final String[] AGGREGATIONS_KEY = {"partition_key"};
+    static final String[] ALERTS_KEY = {"city", "timestamp"};
+    
+    public static void main(String[] args) throws TimeoutException, StreamingQueryException, IOException {
         logger.info("Starting Spark DynamoDB Consumer");
         logger.info("Kafka Bootstrap Servers: {}", KAFKA_BOOTSTRAP_SERVERS);
         logger.info("Kafka Topic: {}", KAFKA_TOPIC);
         logger.info("AWS Region: {}", AWS_REGION);
+        logger.info("Mode: {}", SINGLE_SOURCE_MODE ? "single-source" : "multi-query");
+        logger.info("Watermark delay: {}", WATERMARK_DELAY);
+        logger.info("Aggregation emit mode: {} (interval {})", AGGREGATION_EMIT_MODE, AGGREGATION_EMIT_INTERVAL);
+        logger.info("State store: {}", STATE_STORE_PROVIDER);
+        logger.info("Event rate metrics: {} minute window, {} ms lateness, file {}",
+            METRICS_RATE_WINDOW_MINUTES, METRICS_LATENESS_MS, METRICS_FILE);
+        
+        DynamoDBSinkConfig sinkConfig = DynamoDBSinkConfig.fromEnv(AWS_REGION);
+        logger.info("DynamoDB sink: {}", sinkConfig);
+        
+        EventRateMetrics eventRates = new EventRateMetrics(
+            METRICS_RATE_WINDOW_MINUTES, METRICS_LATENESS_MS, METRICS_FILE);
+        QueryMetricsExporter metricsExporter = new QueryMetricsExporter(eventRates::render);
         
         // Create Spark session
-        SparkSession spark = SparkSession.builder()
+        SparkSession.Builder builder = SparkSession.builder()
             .appName("CityStream DynamoDB Consumer")
             .master("spark://spark-master:7077")
             .config("spark.sql.streaming.checkpointLocation", CHECKPOINT_LOCATION)
-            .getOrCreate();
+            // Executors report their DynamoDB connection pools to the driver's /metrics
+            .config("spark.plugins", PoolStatsPlugin.class.getName())
+            // Minute buckets of the global totals are formatted in UTC, as the API reads them
+            .config("spark.sql.session.timeZone", "UTC");
+        if ("rocksdb".equalsIgnoreCase(STATE_STORE_PROVIDER)) {
+            builder
+                .config("spark.sql.streaming.stateStore.providerClass", ROCKSDB_STATE_STORE_PROVIDER)
+                .config("spark.sql.streaming.stateStore.rocksdb.blockCacheSizeMB", ROCKSDB_BLOCK_CACHE_MB)
+                .config("spark.sql.streaming.stateStore.rocksdb.blockSizeKB", ROCKSDB_BLOCK_SIZE_KB)
+                .config("spark.sql.streaming.stateStore.rocksdb.maxOpenFiles", ROCKSDB_MAX_OPEN_FILES);
+            logger.info("RocksDB state store: blockCacheSizeMB={}, blockSizeKB={}, maxOpenFiles={}",
+                ROCKSDB_BLOCK_CACHE_MB, ROCKSDB_BLOCK_SIZE_KB, ROCKSDB_MAX_OPEN_FILES);
+        }
+        SparkSession spark = builder.getOrCreate();
         
         // Set log level
         spark.sparkContext().setLogLevel("WARN");
         
-        // Initialize DynamoDB client (used by ForeachWriter)
-        logger.info("Initializing DynamoDB connection...");
+        // State rows, memory and commit times of the stateful queries, after every batch
+        spark.streams().addListener(new StateStoreMetricsListener());
+        
+        // Progress of every query, served with the event rate gauges; registered before any query starts
+        spark.streams().addListener(metricsExporter);
+        if (METRICS_PORT > 0) {
+            metricsExporter.start(METRICS_PORT);
+        }
+        
+        // DynamoDB clients are created lazily per executor by DynamoDBClientRegistry
         
         // Define schema for city events
         StructType schema = new StructType()
@@ -83,10 +174,12 @@ public class SparkDynamoDBConsumer {
         
         // Parse JSON events
         Dataset<Row> events = kafkaStream
-            .selectExpr("CAST(value AS STRING) as json")
-            .select(from_json(col("json"), schema).as("data"))
-            .select("data.*")
+            .selectExpr("CAST(value AS STRING) as json", "partition AS kafka_partition", "offset AS kafka_offset")
+            .select(from_json(col("json"), schema).as("data"), col("kafka_partition"), col("kafka_offset"))
+            .select("data.*", "kafka_partition", "kafka_offset")
             .withColumn("processing_time", current_timestamp())
+            // Event time, parsed once; events with an unparseable timestamp fall back to arrival time
+            .withColumn("event_time", coalesce(to_timestamp(col("timestamp")), col("processing_time")))
             .withColumn("event_id", concat(
                 col("city"), 
                 lit("-"), 
@@ -95,38 +188,170 @@ public class SparkDynamoDBConsumer {
                 col("timestamp")  // Use the actual timestamp string instead of unix_timestamp
             ));
         
-        // Query 1: Write raw events to DynamoDB
-        // FIXED: Keep both event_id and timestamp for composite key
-        Dataset<Row> rawEvents = events.select(
-            col("event_id"),
-            col("timestamp"),  // IMPORTANT: Keep original timestamp for sort key
-            col("city"),
-            col("event_type"),
-            col("severity"),
-            col("description"),
-            col("processing_time")
-        );
+        if (SINGLE_SOURCE_MODE) {
+            startSingleSourceQuery(events, sinkConfig, eventRates);
+        } else {
+            startQueries(events, sinkConfig, eventRates);
+        }
         
-        StreamingQuery rawEventsQuery = rawEvents
+        // Wait for termination
+        logger.info("All streaming queries started. Waiting for termination...");
+        try {
+            spark.streams().awaitAnyTermination();
+        } finally {
+            metricsExporter.stop();
+        }
+    }
+    
+    /**
+     * Start one streaming query per sink, each with its own Kafka source and checkpoint
+     */
+    private static void startQueries(Dataset<Row> events, DynamoDBSinkConfig sinkConfig,
+                                     EventRateMetrics eventRates) throws TimeoutException {
+        // Query 1: Write raw events to DynamoDB, one write per event_id per micro-batch
+        StreamingQuery rawEventsQuery = events
             .writeStream()
-            .foreach(new DynamoDBWriter(RAW_EVENTS_TABLE, AWS_REGION))
+            .queryName("raw-events")
+            .foreachBatch(new CoalescingWriter(RAW_EVENTS_TABLE, RAW_EVENTS_KEY,
+                SparkDynamoDBConsumer::rawEvents, sinkConfig))
             .outputMode("append")
             .option("checkpointLocation", CHECKPOINT_LOCATION + "/raw-events")
             .start();
         
         logger.info("Raw events query started");
         
-        // Query 2: 5-minute windowed aggregations
-        Dataset<Row> windowedAggregations = events
-            .withWatermark("processing_time", "10 minutes")
+        // Query 2: 5-minute event-time windowed aggregations; state for a window is
+        // dropped once the watermark passes its end
+        Dataset<Row> windowedAggregations = windowedAggregations(
+            events.withWatermark("event_time", WATERMARK_DELAY));
+        
+        AggregationEmitter.EmitMode emitMode = AggregationEmitter.EmitMode.parse(AGGREGATION_EMIT_MODE);
+        DataStreamWriter<Row> aggregationsWriter = windowedAggregations
+            .writeStream()
+            .queryName("aggregations")
+            .foreachBatch(new AggregationEmitter(sinkConfig, emitMode, events.sparkSession().streams()))
+            .outputMode(emitMode.outputMode)
+            .option("checkpointLocation", CHECKPOINT_LOCATION + "/aggregations");
+        if (emitMode == AggregationEmitter.EmitMode.RATE_LIMITED) {
+            aggregationsWriter.trigger(Trigger.ProcessingTime(AGGREGATION_EMIT_INTERVAL));
+        }
+        StreamingQuery aggregationsQuery = aggregationsWriter.start();
+        
+        logger.info("Aggregations query started ({} emission)", emitMode);
+        
+        // Query 3: High-severity alerts
+        StreamingQuery alertsQuery = events
+            .writeStream()
+            .queryName("alerts")
+            .foreachBatch(new CoalescingWriter(ALERTS_TABLE, ALERTS_KEY,
+                SparkDynamoDBConsumer::alerts, sinkConfig))
+            .outputMode("append")
+            .option("checkpointLocation", CHECKPOINT_LOCATION + "/alerts")
+            .start();
+        
+        logger.info("Alerts query started");
+        
+        // Query 4: Running per-city and global totals, one atomic increment per item per micro-batch.
+        // The same batch feeds the event rate gauges, so monitoring needs no Kafka source of its own
+        RunningTotalsWriter totalsWriter = new RunningTotalsWriter(CITY_TOTALS_TABLE, sinkConfig);
+        StreamingQuery cityTotalsQuery = events
+            .writeStream()
+            .queryName("city-totals")
+            .foreachBatch((VoidFunction2<Dataset<Row>, Long>) (batch, batchId) -> {
+                long epochId = batchId;
+                String runId = runId(batch);
+                batch.persist(StorageLevel.MEMORY_AND_DISK());
+                try {
+                    runningTotals(batch).foreachPartition(
+                        (ForeachPartitionFunction<Row>) partition -> totalsWriter.writePartition(partition, runId, epochId));
+                    eventRates.update(batch);
+                } finally {
+                    batch.unpersist();
+                }
+            })
+            .outputMode("append")
+            .option("checkpointLocation", CHECKPOINT_LOCATION + "/city-totals")
+            .start();
+        
+        logger.info("City totals query started");
+    }
+    
+    /**
+     * Start a single streaming query that reads Kafka once and fans every
+     * micro-batch out to the raw events, alerts and aggregations sinks
+     */
+    private static void startSingleSourceQuery(Dataset<Row> events, DynamoDBSinkConfig sinkConfig,
+                                               EventRateMetrics eventRates) throws TimeoutException {
+        StreamingQuery query = events
+            .writeStream()
+            .queryName("single-source")
+            .foreachBatch(new MicroBatchDispatcher(sinkConfig, eventRates))
+            .outputMode("append")
+            .option("checkpointLocation", CHECKPOINT_LOCATION + "/single-source")
+            .start();
+        
+        logger.info("Single-source query started");
+    }
+    
+    /**
+     * Identity of the query run a foreachBatch batch belongs to: the streaming
+     * query id, which is kept in the checkpoint. Batch ids restart at 0 under a
+     * new checkpoint or another query, so they are only comparable within a run.
+     */
+    static String runId(Dataset<Row> batch) {
+        String queryId = batch.sparkSession().sparkContext().getLocalProperty("sql.streaming.queryId");
+        if (queryId == null) {
+            throw new IllegalStateException("runId is only available inside a streaming foreachBatch");
+        }
+        return queryId;
+    }
+    
+    /**
+     * Item attribute holding the last batch id one query run applied to it
+     */
+    static String lastBatchAttribute(String runId) {
+        return "last_batch_id#" + runId;
+    }
+    
+    /**
+     * Raw events projection
+     * Keep both event_id and timestamp for composite key
+     */
+    static Dataset<Row> rawEvents(Dataset<Row> events) {
+        return events.select(
+            col("event_id"),
+            col("timestamp"),  // IMPORTANT: Keep original timestamp for sort key
+            col("city"),
+            col("event_type"),
+            col("severity"),
+            col("description"),
+            col("processing_time"),
+            col("kafka_partition"),  // Kafka position, dropped by CoalescingWriter before writing
+            col("kafka_offset")
+        );
+    }
+    
+    /**
+     * 5-minute event-time windowed aggregations per city and event type.
+     * Severities are kept as fixed-size counters so state and item size stay
+     * constant per window regardless of event volume.
+     */
+    static Dataset<Row> windowedAggregations(Dataset<Row> events) {
+        return events
+            .withColumn("severity_rank", severityRank(col("severity")))
             .groupBy(
-                window(col("processing_time"), "5 minutes"),
+                window(col("event_time"), "5 minutes"),
                 col("city"),
                 col("event_type")
             )
             .agg(
                 count("*").as("event_count"),
-                collect_list("severity").as("severities"),
+                severityCount("low"),
+                severityCount("medium"),
+                severityCount("high"),
+                severityCount("critical"),
+                max("severity_rank").as("max_severity_rank"),
+                sum("severity_rank").as("severity_score"),
                 max("processing_time").as("last_updated")
             )
             .select(
@@ -142,22 +367,115 @@ public class SparkDynamoDBConsumer {
                 col("city"),
                 col("event_type"),
                 col("event_count"),
-                col("severities"),
+                col("low_count"),
+                col("medium_count"),
+                col("high_count"),
+                col("critical_count"),
+                severityName(col("max_severity_rank")).as("max_severity"),
+                col("severity_score"),
                 col("last_updated")
             );
+    }
+    
+    /**
+     * Per-batch counts for the running totals table: one row per city
+     * (scope "TOTAL"), one per city and event type (scope "TYPE#<event_type>"),
+     * and under the GLOBAL_TOTALS partition the all-city total (scope "GLOBAL")
+     * plus one row per minute (scope "MINUTE#yyyy-MM-dd'T'HH:mm") that expires
+     * after MINUTE_TOTALS_TTL_SECONDS
+     */
+    static Dataset<Row> runningTotals(Dataset<Row> events) {
+        Dataset<Row> ranked = events
+            .filter(col("city").isNotNull().and(col("event_type").isNotNull()))
+            .withColumn("severity_rank", severityRank(col("severity")));
         
-        StreamingQuery aggregationsQuery = windowedAggregations
-            .writeStream()
-            .foreach(new DynamoDBWriter(AGGREGATIONS_TABLE, AWS_REGION))
-            .outputMode("update")
-            .option("checkpointLocation", CHECKPOINT_LOCATION + "/aggregations")
-            .start();
+        // grouping_id 0: city and event type, 1: city only, 3: all cities
+        Dataset<Row> rollup = ranked
+            .rollup(col("city"), col("event_type"))
+            .agg(totalsCount(), totalsColumns(expr("grouping_id()").as("grouping_id")))
+            .select(
+                when(col("grouping_id").equalTo(3), lit(GLOBAL_TOTALS)).otherwise(col("city")).as("city"),
+                when(col("grouping_id").equalTo(0), concat(lit("TYPE#"), col("event_type")))
+                    .when(col("grouping_id").equalTo(1), lit("TOTAL"))
+                    .otherwise(lit("GLOBAL")).as("scope"),
+                col("event_count"),
+                col("low_count"),
+                col("medium_count"),
+                col("high_count"),
+                col("critical_count"),
+                col("severity_score"),
+                col("last_updated"),
+                lit(null).cast(DataTypes.LongType).as("ttl")
+            );
         
-        logger.info("Aggregations query started");
+        Dataset<Row> minutes = ranked
+            .groupBy(date_format(col("processing_time"), "yyyy-MM-dd'T'HH:mm").as("minute"))
+            .agg(totalsCount(), totalsColumns())
+            .select(
+                lit(GLOBAL_TOTALS).as("city"),
+                concat(lit("MINUTE#"), col("minute")).as("scope"),
+                col("event_count"),
+                col("low_count"),
+                col("medium_count"),
+                col("high_count"),
+                col("critical_count"),
+                col("severity_score"),
+                col("last_updated"),
+                unix_timestamp(col("last_updated")).plus(MINUTE_TOTALS_TTL_SECONDS).as("ttl")
+            );
         
-        // Query 3: High-severity alerts
-        // FIXED: Use city and timestamp as separate fields (not concatenated partition_key)
-        Dataset<Row> alerts = events
+        return rollup.unionByName(minutes);
+    }
+    
+    private static Column totalsCount() {
+        return count("*").as("event_count");
+    }
+    
+    private static Column[] totalsColumns(Column... extra) {
+        List<Column> columns = new ArrayList<>(Arrays.asList(
+            severityCount("low"),
+            severityCount("medium"),
+            severityCount("high"),
+            severityCount("critical"),
+            sum("severity_rank").as("severity_score"),
+            max("processing_time").as("last_updated")
+        ));
+        columns.addAll(Arrays.asList(extra));
+        return columns.toArray(new Column[0]);
+    }
+    
+    /**
+     * Severity as a 1-based rank (low=1 .. critical=4), 0 for unknown values
+     */
+    static Column severityRank(Column severity) {
+        Column rank = lit(0);
+        for (int i = SEVERITY_LEVELS.size() - 1; i >= 0; i--) {
+            rank = when(severity.equalTo(SEVERITY_LEVELS.get(i)), i + 1).otherwise(rank);
+        }
+        return rank;
+    }
+    
+    /**
+     * Inverse of severityRank; null for rank 0
+     */
+    static Column severityName(Column rank) {
+        Column name = lit(null).cast(DataTypes.StringType);
+        for (int i = SEVERITY_LEVELS.size() - 1; i >= 0; i--) {
+            name = when(rank.equalTo(i + 1), SEVERITY_LEVELS.get(i)).otherwise(name);
+        }
+        return name;
+    }
+    
+    private static Column severityCount(String severity) {
+        return sum(when(col("severity").equalTo(severity), 1L).otherwise(0L)).as(severity + "_count");
+    }
+    
+    /**
+     * High-severity alerts projection
+     * Use city and timestamp as separate fields (not concatenated partition_key)
+     */
+    static Dataset<Row> alerts(Dataset<Row> events) {
+        return events
             .filter(col("severity").isin("high", "critical"))
             .select(
                 col("city"),           // Partition key
@@ -166,60 +484,38 @@ public class SparkDynamoDBConsumer {
                 col("severity"),
                 col("description"),
                 col("processing_time"),
-                col("event_id")
+                col("event_id"),
+                col("kafka_partition"),  // Kafka position, dropped by CoalescingWriter before writing
+                col("kafka_offset")
             );
-        
-        StreamingQuery alertsQuery = alerts
-            .writeStream()
-            .foreach(new DynamoDBWriter(ALERTS_TABLE, AWS_REGION))
-            .outputMode("append")
-            .option("checkpointLocation", CHECKPOINT_LOCATION + "/alerts")
-            .start();
-        
-        logger.info("Alerts query started");
-        
-        // Console output for monitoring
-        StreamingQuery consoleQuery = events
-            .groupBy("city", "event_type", "severity")
-            .count()
-            .writeStream()
-            .outputMode("complete")
-            .format("console")
-            .option("truncate", false)
-            .option("checkpointLocation", CHECKPOINT_LOCATION + "/console")
-            .start();
-        
-        logger.info("Console monitoring query started");
-        
-        // Wait for termination
-        logger.info("All streaming queries started. Waiting for termination...");
-        spark.streams().awaitAnyTermination();
     }
     
     /**
-     * Custom ForeachWriter to write rows to DynamoDB
+     * Custom ForeachWriter that buffers rows per partition and writes them to
+     * DynamoDB with BatchWriteItem. Everything still buffered is flushed in
+     * close(), so a partition only succeeds once all of its rows are persisted.
      */
     static class DynamoDBWriter extends ForeachWriter<Row> {
         private final String tableName;
-        private final String region;
+        private final String[] keyAttributes;
+        private final DynamoDBSinkConfig config;
         private transient DynamoDB dynamoDB;
-        private transient Table table;
+        private transient DynamoDBBatchWriter batchWriter;
+        private transient long partitionId;
         
-        public DynamoDBWriter(String tableName, String region) {
+        public DynamoDBWriter(String tableName, String[] keyAttributes, DynamoDBSinkConfig config) {
             this.tableName = tableName;
-            this.region = region;
+            this.keyAttributes = keyAttributes;
+            this.config = config;
         }
         
         @Override
         public boolean open(long partitionId, long epochId) {
             try {
-                AmazonDynamoDB client = AmazonDynamoDBClientBuilder.standard()
-                    .withRegion(region)
-                    .withCredentials(new DefaultAWSCredentialsProviderChain())
-                    .build();
-                
-                dynamoDB = new DynamoDB(client);
-                table = dynamoDB.getTable(tableName);
+                // Shared per executor JVM; survives across epochs and is never shut down here
+                dynamoDB = DynamoDBClientRegistry.get(config);
+                batchWriter = new DynamoDBBatchWriter(dynamoDB, tableName, keyAttributes, config);
+                this.partitionId = partitionId;
                 logger.info("Successfully opened DynamoDB connection to table: {} for partition: {}", 
                     tableName, partitionId);
                 return true;
@@ -232,38 +528,7 @@ public class SparkDynamoDBConsumer {
         @Override
         public void process(Row row) {
             try {
-                Item item = new Item();
-                
-                // Add all columns to item
-                for (String field : row.schema().fieldNames()) {
-                    Object value = row.getAs(field);
-                    if (value != null) {
-                        if (value instanceof scala.collection.Seq) {
-                            // Convert Scala Seq to Java List (Scala 2.12 compatible)
-                            scala.collection.Seq<?> seq = (scala.collection.Seq<?>) value;
-                            java.util.List<Object> list = new java.util.ArrayList<>();
-                            scala.collection.Iterator<?> iterator = seq.iterator();
-                            while (iterator.hasNext()) {
-                                list.add(iterator.next());
-                            }
-                            item.withList(field, list);
-                        } else if (value instanceof java.sql.Timestamp) {
-                            item.withString(field, value.toString());
-                        } else {
-                            item.with(field, value);
-                        }
-                    }
-                }
-                
-                // Add TTL (30 days from now) for raw events
-                if (tableName.equals(RAW_EVENTS_TABLE)) {
-                    long ttl = Instant.now().getEpochSecond() + (30 * 24 * 60 * 60);
-                    item.withLong("ttl", ttl);
-                }
-                
-                table.putItem(item);
-                logger.debug("Successfully wrote item to {}: {}", tableName, item.toJSON());
-                
+                batchWriter.add(toItem(row, tableName));
             } catch (Exception e) {
                 logger.error("Failed to write to DynamoDB table {}: {}", tableName, e.getMessage(), e);
                 // Re-throw to fail the batch and trigger retry
@@ -273,12 +538,80 @@ public class SparkDynamoDBConsumer {
         
         @Override
         public void close(Throwable errorOrNull) {
-            if (errorOrNull != null) {
-                logger.error("Closing DynamoDBWriter with error", errorOrNull);
+            try {
+                if (errorOrNull != null) {
+                    logger.error("Closing DynamoDBWriter with error", errorOrNull);
+                } else if (batchWriter != null) {
+                    // Flush the tail before the epoch commits; a failure here fails the task
+                    batchWriter.flush();
+                    logger.info("Wrote {} items to {} for partition {} in {} batch requests ({} retries)",
+                        batchWriter.getItemsWritten(), tableName, partitionId,
+                        batchWriter.getBatchRequests(), batchWriter.getRetryRequests());
+                }
+            } catch (Exception e) {
+                logger.error("Failed to flush DynamoDB table {}: {}", tableName, e.getMessage(), e);
+                throw new RuntimeException("DynamoDB write failed", e);
+            }
+        }
+        
+        /**
+         * Write one partition outside of a streaming ForeachWriter sink (used by foreachBatch);
+         * returns the number of rows written
+         */
+        long writePartition(Iterator<Row> rows, long epochId) {
+            if (!open(TaskContext.getPartitionId(), epochId)) {
+                throw new RuntimeException("Failed to open DynamoDB writer for table " + tableName);
+            }
+            Throwable error = null;
+            long processed = 0;
+            try {
+                while (rows.hasNext()) {
+                    process(rows.next());
+                    processed++;
+                }
+                return processed;
+            } catch (RuntimeException e) {
+                error = e;
+                throw e;
+            } finally {
+                close(error);
+            }
+        }
+        
+        /**
+         * Convert a Spark row into a DynamoDB item
+         */
+        static Item toItem(Row row, String tableName) {
+            Item item = new Item();
+            
+            // Add all columns to item
+            for (String field : row.schema().fieldNames()) {
+                Object value = row.getAs(field);
+                if (value != null) {
+                    if (value instanceof scala.collection.Seq) {
+                        // Convert Scala Seq to Java List (Scala 2.12 compatible)
+                        scala.collection.Seq<?> seq = (scala.collection.Seq<?>) value;
+                        java.util.List<Object> list = new java.util.ArrayList<>();
+                        scala.collection.Iterator<?> iterator = seq.iterator();
+                        while (iterator.hasNext()) {
+                            list.add(iterator.next());
+                        }
+                        item.withList(field, list);
+                    } else if (value instanceof java.sql.Timestamp) {
+                        item.withString(field, value.toString());
+                    } else {
+                        item.with(field, value);
+                    }
+                }
             }
-            if (dynamoDB != null) {
-                dynamoDB.shutdown();
+            
+            // Add TTL (30 days from now) for raw events
+            if (tableName.equals(RAW_EVENTS_TABLE)) {
+                long ttl = Instant.now().getEpochSecond() + (30 * 24 * 60 * 60);
+                item.withLong("ttl", ttl);
             }
+            
+            return item;
         }
     }
 }
\ No newline at end of file
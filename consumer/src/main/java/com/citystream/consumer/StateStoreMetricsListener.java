@@ -0,0 +1,71 @@
+package com.citystream.consumer;
+
+import org.apache.spark.sql.streaming.StateOperatorProgress;
+import org.apache.spark.sql.streaming.StreamingQueryListener;
+import org.apache.spark.sql.streaming.StreamingQueryProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logs the state store metrics of every stateful query after each micro-batch:
+ * rows kept, updated, removed and dropped as late, memory used, and the time
+ * spent committing the state checkpoint. With the RocksDB provider the commit
+ * breakdown, block cache hits and SST size on disk are included.
+ *
+ * Registered on the driver with spark.streams().addListener.
+ */
+class StateStoreMetricsListener extends StreamingQueryListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StateStoreMetricsListener.class);
+
+    // Subset of the RocksDB provider's custom metrics worth a line per batch
+    private static final List<String> ROCKSDB_METRICS = Arrays.asList(
+        "rocksdbCommitFlushLatency",
+        "rocksdbCommitCompactLatency",
+        "rocksdbCommitCheckpointLatency",
+        "rocksdbCommitFileSyncLatencyMs",
+        "rocksdbReadBlockCacheHitCount",
+        "rocksdbReadBlockCacheMissCount",
+        "rocksdbSstFileSize",
+        "rocksdbWriterStallLatencyMs"
+    );
+
+    @Override
+    public void onQueryStarted(QueryStartedEvent event) {
+    }
+
+    @Override
+    public void onQueryProgress(QueryProgressEvent event) {
+        StreamingQueryProgress progress = event.progress();
+        for (StateOperatorProgress state : progress.stateOperators()) {
+            logger.info("State [{}] batch {} {}: {} rows ({} updated, {} removed, {} dropped late), "
+                    + "{} KB memory, commit {} ms over {} stores{}",
+                progress.name(), progress.batchId(), state.operatorName(),
+                state.numRowsTotal(), state.numRowsUpdated(), state.numRowsRemoved(),
+                state.numRowsDroppedByWatermark(), state.memoryUsedBytes() / 1024,
+                state.commitTimeMs(), state.numStateStoreInstances(), rocksDBMetrics(state.customMetrics()));
+        }
+    }
+
+    @Override
+    public void onQueryTerminated(QueryTerminatedEvent event) {
+    }
+
+    private static String rocksDBMetrics(Map<String, Long> customMetrics) {
+        if (!customMetrics.containsKey("rocksdbSstFileSize")) {
+            return "";
+        }
+        StringBuilder metrics = new StringBuilder(";");
+        for (String name : ROCKSDB_METRICS) {
+            Long value = customMetrics.get(name);
+            if (value != null) {
+                metrics.append(' ').append(name).append('=').append(value);
+            }
+        }
+        return metrics.toString();
+    }
+}
@@ -0,0 +1,88 @@
+#!/bin/bash
+
+# CityStream API load test
+#
+# Drives a fixed request rate against a DynamoDB-backed endpoint and, at the
+# same time, probes /health, reporting achieved RPS, error counts and latency
+# percentiles for both. Run it before and after a change with the same
+# arguments and compare; raise RATE until errors or p99 climb to find the
+# maximum sustainable rate.
+#
+#   ./load-test-api.sh [base_url] [path] [rate_per_second] [duration_seconds] [max_in_flight]
+#   ./load-test-api.sh http://localhost:8082 /api/v1/aggregations?city=NYC\&eventType=traffic 200 30
+
+BASE_URL=${1:-http://localhost:8082}
+TARGET_PATH=${2:-/api/v1/alerts}
+RATE=${3:-100}
+DURATION=${4:-30}
+MAX_IN_FLIGHT=${5:-400}
+
+echo "================================"
+echo "CityStream API Load Test"
+echo "================================"
+echo "Target:   $BASE_URL$TARGET_PATH"
+echo "Rate:     $RATE req/s for ${DURATION}s (max $MAX_IN_FLIGHT in flight)"
+echo "Probe:    $BASE_URL/api/v1/health every 100ms"
+
+python3 - "$BASE_URL" "$TARGET_PATH" "$RATE" "$DURATION" "$MAX_IN_FLIGHT" <<'EOF'
+import sys, time, threading, urllib.request, urllib.error
+from concurrent.futures import ThreadPoolExecutor
+
+base, path, rate, duration, max_in_flight = sys.argv[1], sys.argv[2], float(sys.argv[3]), float(sys.argv[4]), int(sys.argv[5])
+lock = threading.Lock()
+results = {"target": [], "health": []}
+
+def call(kind, url):
+    start = time.perf_counter()
+    try:
+        with urllib.request.urlopen(url, timeout=30) as response:
+            response.read()
+            status = response.status
+    except urllib.error.HTTPError as e:
+        status = e.code
+    except Exception as e:
+        status = type(e).__name__
+    with lock:
+        results[kind].append((status, (time.perf_counter() - start) * 1000))
+
+def probe(stop):
+    while not stop.is_set():
+        call("health", base + "/api/v1/health")
+        time.sleep(0.1)
+
+stop = threading.Event()
+prober = threading.Thread(target=probe, args=(stop,), daemon=True)
+prober.start()
+
+pool = ThreadPoolExecutor(max_workers=max_in_flight)
+started = time.perf_counter()
+sent = 0
+while time.perf_counter() - started < duration:
+    due = started + sent / rate
+    delay = due - time.perf_counter()
+    if delay > 0:
+        time.sleep(delay)
+    pool.submit(call, "target", base + path)
+    sent += 1
+pool.shutdown(wait=True)
+elapsed = time.perf_counter() - started
+stop.set()
+prober.join()
+
+def percentile(values, p):
+    if not values:
+        return float("nan")
+    values = sorted(values)
+    return values[min(len(values) - 1, int(round(p / 100.0 * (len(values) - 1))))]
+
+for kind in ("target", "health"):
+    rows = results[kind]
+    ok = [ms for status, ms in rows if status == 200]
+    by_status = {}
+    for status, _ in rows:
+        by_status[status] = by_status.get(status, 0) + 1
+    print("\n=== %s ===" % kind)
+    print("requests: %d, completed/s: %.1f, status: %s" % (len(rows), len(ok) / elapsed, by_status))
+    print("latency ms (200 only): p50 %.1f  p90 %.1f  p99 %.1f  max %.1f" % (
+        percentile(ok, 50), percentile(ok, 90), percentile(ok, 99), percentile(ok, 100)))
+EOF
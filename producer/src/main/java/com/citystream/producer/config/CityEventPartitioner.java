@@ -0,0 +1,123 @@
+package com.citystream.producer.config;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Partitioner for city-event records keyed "city:event_type" (see {@link #key}).
+ *
+ * Strategies:
+ * <ul>
+ *   <li>{@code city}: murmur2 of the city, the same placement the default
+ *       partitioner gave records keyed by city alone.</li>
+ *   <li>{@code city-event-type}: each city owns {@code spread} consecutive
+ *       partitions starting at its city hash, and the event type picks one of
+ *       them. Hot cities can be given a wider spread with
+ *       {@code city-spread} (e.g. {@code NYC=6,LA=4}).</li>
+ * </ul>
+ * Placement depends only on the key and configuration, so ordering per
+ * city+event_type is preserved.
+ */
+public class CityEventPartitioner implements Partitioner {
+
+    public static final String STRATEGY_CONFIG = "citystream.partitioner.strategy";
+    public static final String SPREAD_CONFIG = "citystream.partitioner.spread";
+    public static final String CITY_SPREAD_CONFIG = "citystream.partitioner.city-spread";
+
+    private static final char KEY_SEPARATOR = ':';
+
+    // Bound on cached key hashes; keys outside the generator's vocabulary are hashed per call
+    private static final int MAX_CACHED_KEYS = 10_000;
+
+    private boolean saltByEventType;
+    private int defaultSpread;
+    private final Map<String, Integer> citySpread = new HashMap<>();
+    private final Map<String, KeyHash> keyHashes = new ConcurrentHashMap<>();
+
+    public static String key(String city, String eventType) {
+        return city + KEY_SEPARATOR + eventType;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object strategy = configs.get(STRATEGY_CONFIG);
+        saltByEventType = strategy == null || "city-event-type".equals(strategy.toString());
+
+        Object spread = configs.get(SPREAD_CONFIG);
+        defaultSpread = spread == null ? 1 : Math.max(1, Integer.parseInt(spread.toString()));
+
+        Object overrides = configs.get(CITY_SPREAD_CONFIG);
+        if (overrides != null && !overrides.toString().isBlank()) {
+            for (String entry : overrides.toString().split(",")) {
+                String[] parts = entry.trim().split("=");
+                citySpread.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+            }
+        }
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes,
+                         Cluster cluster) {
+        int numPartitions = cluster.partitionCountForTopic(topic);
+        if (key == null) {
+            return ThreadLocalRandom.current().nextInt(numPartitions);
+        }
+
+        KeyHash hash = hashOf(key.toString());
+        if (!saltByEventType) {
+            return hash.cityHash % numPartitions;
+        }
+        int spread = Math.min(citySpread.getOrDefault(hash.city, defaultSpread), numPartitions);
+        // Reduce each term first: cityHash + eventTypeHash % spread overflows for cityHash near MAX_VALUE
+        return (hash.cityHash % numPartitions + hash.eventTypeHash % spread) % numPartitions;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private KeyHash hashOf(String key) {
+        KeyHash hash = keyHashes.get(key);
+        if (hash == null) {
+            hash = KeyHash.of(key);
+            if (keyHashes.size() < MAX_CACHED_KEYS) {
+                keyHashes.put(key, hash);
+            }
+        }
+        return hash;
+    }
+
+    private static final class KeyHash {
+        final String city;
+        final int cityHash;
+        final int eventTypeHash;
+
+        // Both hashes are non-negative, so every modulo above stays in [0, numPartitions)
+        private KeyHash(String city, int cityHash, int eventTypeHash) {
+            if (cityHash < 0 || eventTypeHash < 0) {
+                throw new IllegalArgumentException("Key hashes must be non-negative");
+            }
+            this.city = city;
+            this.cityHash = cityHash;
+            this.eventTypeHash = eventTypeHash;
+        }
+
+        static KeyHash of(String key) {
+            int separator = key.indexOf(KEY_SEPARATOR);
+            String city = separator < 0 ? key : key.substring(0, separator);
+            String eventType = separator < 0 ? "" : key.substring(separator + 1);
+            return new KeyHash(city, murmur2(city), murmur2(eventType));
+        }
+
+        private static int murmur2(String value) {
+            return Utils.toPositive(Utils.murmur2(value.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.citystream.producer.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.util.Map;
+
+/**
+ * Producer wiring for city events: "city:event_type" String keys placed by
+ * CityEventPartitioner, and pre-encoded byte[] JSON values (see CityEventEncoder),
+ * so no String round trip happens on the send path.
+ */
+@Configuration
+public class KafkaProducerConfig {
+
+    @Value("${kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${kafka.producer.partitioner.strategy:city-event-type}")
+    private String partitionerStrategy;
+
+    @Value("${kafka.producer.partitioner.spread:3}")
+    private int partitionerSpread;
+
+    @Value("${kafka.producer.partitioner.city-spread:}")
+    private String partitionerCitySpread;
+
+    @Bean
+    public ProducerFactory<String, byte[]> cityEventProducerFactory(KafkaProperties kafkaProperties) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        props.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, CityEventPartitioner.class);
+        props.put(CityEventPartitioner.STRATEGY_CONFIG, partitionerStrategy);
+        props.put(CityEventPartitioner.SPREAD_CONFIG, partitionerSpread);
+        props.put(CityEventPartitioner.CITY_SPREAD_CONFIG, partitionerCitySpread);
+        return new DefaultKafkaProducerFactory<>(props);
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> cityEventKafkaTemplate(
+            ProducerFactory<String, byte[]> cityEventProducerFactory) {
+        return new KafkaTemplate<>(cityEventProducerFactory);
+    }
+}
@@ -1,6 +1,7 @@
 package com.citystream.producer.controller;
 
 import com.citystream.producer.service.KafkaProducerService;
+import com.citystream.producer.service.LoadGeneratorService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -13,8 +14,16 @@ public class MetricsController {
     @Autowired
     private KafkaProducerService producerService;
 
+    @Autowired
+    private LoadGeneratorService loadGeneratorService;
+
     @GetMapping("/producer")
     public KafkaProducerService.ProducerMetrics getProducerMetrics() {
         return producerService.getMetrics();
     }
+
+    @GetMapping("/load")
+    public LoadGeneratorService.LoadMetrics getLoadMetrics() {
+        return loadGeneratorService.getMetrics();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.citystream.producer.serialization;
+
+import com.citystream.producer.model.CityEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes a CityEvent straight to UTF-8 JSON bytes.
+ *
+ * Produces the same document as the Jackson mapping on CityEvent (same field
+ * order, with the renamed event_type last, and timestamp as
+ * yyyy-MM-dd'T'HH:mm:ss'Z') without going through an intermediate String.
+ * Field names and the known city/event_type/severity
+ * values are encoded once up front, the timestamp is written digit by digit,
+ * and each thread writes into its own reusable buffer, so the only allocation
+ * per event is the returned array.
+ *
+ * Thread-safe once constructed.
+ */
+public class CityEventEncoder {
+
+    private static final byte[] CITY_FIELD = ascii("{\"city\":");
+    private static final byte[] SEVERITY_FIELD = ascii(",\"severity\":");
+    private static final byte[] TIMESTAMP_FIELD = ascii(",\"timestamp\":");
+    private static final byte[] DESCRIPTION_FIELD = ascii(",\"description\":");
+    private static final byte[] EVENT_TYPE_FIELD = ascii(",\"event_type\":");
+    private static final byte[] NULL = ascii("null");
+    // Upper-case hex digits, as in Jackson's escapes of control characters
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    // Quoted, escaped UTF-8 for known values; read-only after construction
+    private final Map<String, byte[]> preEncoded = new HashMap<>();
+
+    private final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    public CityEventEncoder(Collection<String> knownValues) {
+        for (String value : knownValues) {
+            Buffer buffer = new Buffer();
+            buffer.writeString(value);
+            preEncoded.put(value, buffer.toByteArray());
+        }
+    }
+
+    public byte[] encode(CityEvent event) {
+        Buffer buffer = buffers.get();
+        buffer.reset();
+
+        buffer.write(CITY_FIELD);
+        writeToken(buffer, event.getCity());
+        buffer.write(SEVERITY_FIELD);
+        writeToken(buffer, event.getSeverity());
+        buffer.write(TIMESTAMP_FIELD);
+        buffer.writeTimestamp(event.getTimestamp());
+        buffer.write(DESCRIPTION_FIELD);
+        buffer.writeString(event.getDescription());
+        buffer.write(EVENT_TYPE_FIELD);
+        writeToken(buffer, event.getEventType());
+        buffer.writeByte('}');
+
+        return buffer.toByteArray();
+    }
+
+    private void writeToken(Buffer buffer, String value) {
+        byte[] encoded = value == null ? null : preEncoded.get(value);
+        if (encoded != null) {
+            buffer.write(encoded);
+        } else {
+            buffer.writeString(value);
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Growable byte buffer with JSON-aware writers
+     */
+    private static final class Buffer {
+        private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+        private int length;
+
+        void reset() {
+            length = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) b;
+        }
+
+        void write(byte[] source) {
+            ensureCapacity(source.length);
+            System.arraycopy(source, 0, bytes, length, source.length);
+            length += source.length;
+        }
+
+        // "yyyy-MM-dd'T'HH:mm:ss'Z'" including quotes
+        void writeTimestamp(LocalDateTime timestamp) {
+            if (timestamp == null) {
+                write(NULL);
+                return;
+            }
+            ensureCapacity(22);
+            bytes[length++] = '"';
+            writeDigits(timestamp.getYear(), 4);
+            bytes[length++] = '-';
+            writeDigits(timestamp.getMonthValue(), 2);
+            bytes[length++] = '-';
+            writeDigits(timestamp.getDayOfMonth(), 2);
+            bytes[length++] = 'T';
+            writeDigits(timestamp.getHour(), 2);
+            bytes[length++] = ':';
+            writeDigits(timestamp.getMinute(), 2);
+            bytes[length++] = ':';
+            writeDigits(timestamp.getSecond(), 2);
+            bytes[length++] = 'Z';
+            bytes[length++] = '"';
+        }
+
+        // Caller has ensured capacity
+        private void writeDigits(int value, int width) {
+            for (int i = width - 1; i >= 0; i--) {
+                bytes[length + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += width;
+        }
+
+        // Quoted JSON string, escaped like Jackson's default and encoded as UTF-8
+        void writeString(String value) {
+            if (value == null) {
+                write(NULL);
+                return;
+            }
+            // Worst case: 6 bytes per char for \\uXXXX escapes, plus quotes
+            ensureCapacity(value.length() * 6 + 2);
+            bytes[length++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (c >= 0x20 && c != '"' && c != '\\') {
+                        bytes[length++] = (byte) c;
+                    } else {
+                        writeEscaped(c);
+                    }
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate: same replacement as String.getBytes(UTF_8)
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            bytes[length++] = '"';
+        }
+
+        private void writeEscaped(char c) {
+            bytes[length++] = '\\';
+            switch (c) {
+                case '"': bytes[length++] = '"'; break;
+                case '\\': bytes[length++] = '\\'; break;
+                case '\n': bytes[length++] = 'n'; break;
+                case '\r': bytes[length++] = 'r'; break;
+                case '\t': bytes[length++] = 't'; break;
+                case '\b': bytes[length++] = 'b'; break;
+                case '\f': bytes[length++] = 'f'; break;
+                default:
+                    bytes[length++] = 'u';
+                    bytes[length++] = '0';
+                    bytes[length++] = '0';
+                    bytes[length++] = HEX[(c >> 4) & 0xF];
+                    bytes[length++] = HEX[c & 0xF];
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
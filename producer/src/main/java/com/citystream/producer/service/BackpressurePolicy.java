@@ -0,0 +1,13 @@
+package com.citystream.producer.service;
+
+/**
+ * What KafkaProducerService does when the in-flight send limit is reached
+ */
+public enum BackpressurePolicy {
+    // Wait for a permit; the wait is recorded as throttle time
+    BLOCK,
+    // Queue the event locally and drop the oldest queued event when the queue is full
+    DROP_OLDEST,
+    // Reject the event immediately; sendEvent returns false
+    FAIL_FAST
+}
@@ -4,11 +4,15 @@ import com.citystream.producer.model.CityEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
-import java.util.UUID;
+import java.util.random.RandomGenerator;
 
 @Service
 public class EventGeneratorService {
@@ -20,6 +24,10 @@ public class EventGeneratorService {
 
     private final Random random = new Random();
 
+    // Load generation mode replaces the 5-second scheduled events
+    @Value("${generator.load.enabled:false}")
+    private boolean loadModeEnabled;
+
     private static final String[] EVENT_TYPES = {"traffic", "weather", "incident", "construction"};
     private static final String[] CITIES = {"SF", "NYC", "LA", "Chicago", "Seattle", "Boston"};
     private static final String[] SEVERITIES = {"low", "medium", "high", "critical"};
@@ -27,22 +35,40 @@ public class EventGeneratorService {
     // Generate event every 5 seconds
     @Scheduled(fixedDelay = 5000, initialDelay = 3000)
     public void generateEvent() {
+        if (loadModeEnabled) {
+            return;
+        }
+
+        CityEvent event = randomEvent(random);
+
+        log.info("Generated event: {}", event);
+        producerService.sendEvent(event);
+    }
+
+    // Every city, event type and severity the generator can emit, for pre-encoding
+    public static List<String> vocabulary() {
+        List<String> values = new ArrayList<>();
+        values.addAll(Arrays.asList(CITIES));
+        values.addAll(Arrays.asList(EVENT_TYPES));
+        values.addAll(Arrays.asList(SEVERITIES));
+        return values;
+    }
+
+    // Build a random event; shared with LoadGeneratorService, which passes a per-thread generator
+    static CityEvent randomEvent(RandomGenerator random) {
         String eventType = EVENT_TYPES[random.nextInt(EVENT_TYPES.length)];
         String city = CITIES[random.nextInt(CITIES.length)];
         String severity = SEVERITIES[random.nextInt(SEVERITIES.length)];
         
-        CityEvent event = new CityEvent(
+        return new CityEvent(
                 city,
                 eventType,
                 severity,
                 generateDescription(eventType, severity)
         );
-
-        log.info("Generated event: {}", event);
-        producerService.sendEvent(event);
     }
 
-    private String generateDescription(String eventType, String severity) {
+    private static String generateDescription(String eventType, String severity) {
         return switch (eventType) {
             case "traffic" -> severity + " traffic congestion detected";
             case "weather" -> severity + " weather condition reported";
@@ -1,9 +1,14 @@
 package com.citystream.producer.service;
 
+import com.citystream.producer.config.CityEventPartitioner;
 import com.citystream.producer.model.CityEvent;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.citystream.producer.serialization.CityEventEncoder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +19,16 @@ import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -23,13 +37,39 @@ public class KafkaProducerService {
 
     private static final Logger log = LoggerFactory.getLogger(KafkaProducerService.class);
 
+    // Largest number of permits a blocked batch waits for at once
+    private static final int PERMIT_CHUNK = 256;
+    private static final long DRAIN_INTERVAL_MS = 50;
+
+    @Autowired
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
     @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private LatencyTracker latencyTracker;
 
     @Value("${kafka.topic.city-events:city-events}")
     private String topic;
 
-    private final ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Sends handed to Kafka but not yet acknowledged
+    @Value("${kafka.producer.max-in-flight:10000}")
+    private int maxInFlight;
+
+    @Value("${kafka.producer.backpressure-policy:BLOCK}")
+    private BackpressurePolicy backpressurePolicy;
+
+    // Local queue bound for DROP_OLDEST
+    @Value("${kafka.producer.pending-queue-size:10000}")
+    private int pendingQueueSize;
+
+    private final CityEventEncoder encoder;
+
+    private Semaphore inFlightPermits;
+    private LinkedBlockingDeque<CityEvent> pendingEvents;
+    private Timer throttleTimer;
+    private ScheduledExecutorService drainScheduler;
 
     // Metrics tracking
     private final LongAdder successCount = new LongAdder();
@@ -38,53 +78,208 @@ public class KafkaProducerService {
     private final AtomicLong minLatencyMs = new AtomicLong(Long.MAX_VALUE);
     private final AtomicLong maxLatencyMs = new AtomicLong(0);
     private final Instant startTime = Instant.now();
+    private final LongAdder throttleNanos = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final Map<Integer, Counter> partitionSendCounts = new ConcurrentHashMap<>();
 
     public KafkaProducerService() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this.encoder = new CityEventEncoder(EventGeneratorService.vocabulary());
     }
 
-    public void sendEvent(CityEvent event) {
-        Instant sendStart = Instant.now();
-        
+    @PostConstruct
+    void initBackpressure() {
+        // Fair, so blocked callers get permits in arrival order
+        this.inFlightPermits = new Semaphore(maxInFlight, true);
+        this.pendingEvents = new LinkedBlockingDeque<>(pendingQueueSize);
+        this.throttleTimer = Timer.builder("citystream.producer.backpressure.throttle")
+            .description("Time callers spent waiting for an in-flight send permit")
+            .register(meterRegistry);
+        Gauge.builder("citystream.producer.inflight", this, service -> service.getInFlightCount())
+            .description("Sends handed to Kafka and not yet acknowledged")
+            .register(meterRegistry);
+        Gauge.builder("citystream.producer.pending", pendingEvents, LinkedBlockingDeque::size)
+            .description("Events queued locally waiting for an in-flight permit (DROP_OLDEST)")
+            .register(meterRegistry);
+        if (backpressurePolicy == BackpressurePolicy.DROP_OLDEST) {
+            // Own thread, so a generator blocked on the shared scheduler cannot stall the drain
+            drainScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "producer-drain");
+                thread.setDaemon(true);
+                return thread;
+            });
+            drainScheduler.scheduleWithFixedDelay(this::drainPending,
+                DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        log.info("Producer backpressure: maxInFlight={}, policy={}", maxInFlight, backpressurePolicy);
+    }
+
+    @PreDestroy
+    void stopDrain() {
+        if (drainScheduler != null) {
+            drainScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Send one event, applying the configured backpressure policy.
+     * Returns false if the event was rejected (FAIL_FAST with no permit available).
+     */
+    public boolean sendEvent(CityEvent event) {
+        switch (backpressurePolicy) {
+            case FAIL_FAST:
+                if (!inFlightPermits.tryAcquire()) {
+                    rejectedCount.increment();
+                    return false;
+                }
+                send(event, System.nanoTime());
+                return true;
+            case DROP_OLDEST:
+                enqueue(event);
+                drainPending();
+                return true;
+            case BLOCK:
+            default:
+                acquirePermits(1);
+                send(event, System.nanoTime());
+                return true;
+        }
+    }
+
+    /**
+     * Send a batch of events, acquiring in-flight permits for the whole batch at once.
+     * Returns the number of events accepted; with FAIL_FAST the events after the
+     * first one that could not get a permit are rejected.
+     */
+    public int sendBatch(List<CityEvent> events) {
+        switch (backpressurePolicy) {
+            case FAIL_FAST: {
+                int accepted = 0;
+                while (accepted < events.size() && inFlightPermits.tryAcquire()) {
+                    accepted++;
+                }
+                long sendStartNanos = System.nanoTime();
+                for (int i = 0; i < accepted; i++) {
+                    send(events.get(i), sendStartNanos);
+                }
+                rejectedCount.add(events.size() - accepted);
+                return accepted;
+            }
+            case DROP_OLDEST:
+                events.forEach(this::enqueue);
+                drainPending();
+                return events.size();
+            case BLOCK:
+            default:
+                // Acquire and send in small chunks, so a large batch never waits for many
+                // permits at the head of the fair queue while single sends queue behind it
+                int chunk = Math.min(maxInFlight, PERMIT_CHUNK);
+                for (int from = 0; from < events.size(); from += chunk) {
+                    int to = Math.min(from + chunk, events.size());
+                    acquirePermits(to - from);
+                    long sendStartNanos = System.nanoTime();
+                    for (int i = from; i < to; i++) {
+                        send(events.get(i), sendStartNanos);
+                    }
+                }
+                return events.size();
+        }
+    }
+
+    // Drain the DROP_OLDEST queue; also run every DRAIN_INTERVAL_MS when no new sends arrive to do it
+    public void drainPending() {
+        while (!pendingEvents.isEmpty() && inFlightPermits.tryAcquire()) {
+            CityEvent event = pendingEvents.pollFirst();
+            if (event == null) {
+                inFlightPermits.release();
+                return;
+            }
+            send(event, System.nanoTime());
+        }
+    }
+
+    private void enqueue(CityEvent event) {
+        while (!pendingEvents.offerLast(event)) {
+            if (pendingEvents.pollFirst() != null) {
+                droppedCount.increment();
+            }
+        }
+    }
+
+    private void acquirePermits(int permits) {
+        if (inFlightPermits.tryAcquire(permits)) {
+            return;
+        }
+        long waitStart = System.nanoTime();
+        inFlightPermits.acquireUninterruptibly(permits);
+        long waitedNanos = System.nanoTime() - waitStart;
+        throttleTimer.record(waitedNanos, TimeUnit.NANOSECONDS);
+        throttleNanos.add(waitedNanos);
+    }
+
+    // Caller must hold one in-flight permit for the event; it is released on completion
+    private void send(CityEvent event, long sendStartNanos) {
+        CompletableFuture<SendResult<String, byte[]>> future;
         try {
-            String eventJson = objectMapper.writeValueAsString(event);
-            String key = event.getCity();
+            byte[] eventJson = encoder.encode(event);
+            String key = CityEventPartitioner.key(event.getCity(), event.getEventType());
             
-            CompletableFuture<SendResult<String, String>> future = 
-                kafkaTemplate.send(topic, key, eventJson);
+            future = kafkaTemplate.send(topic, key, eventJson);
+        } catch (RuntimeException e) {
+            inFlightPermits.release();
+            failureCount.increment();
+            log.error("Failed to send event: city={}, type={}", event.getCity(), event.getEventType(), e);
+            return;
+        }
 
-            future.whenComplete((result, ex) -> {
-                long latencyMs = Duration.between(sendStart, Instant.now()).toMillis();
+        future.whenComplete((result, ex) -> {
+            inFlightPermits.release();
+            long latencyNanos = System.nanoTime() - sendStartNanos;
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            
+            if (ex == null) {
+                // Update success metrics
+                successCount.increment();
+                recordPartitionSend(result.getRecordMetadata().partition());
+                updateLatencyMetrics(latencyMs);
+                latencyTracker.record(latencyNanos);
                 
-                if (ex == null) {
-                    // Update success metrics
-                    successCount.increment();
-                    updateLatencyMetrics(latencyMs);
-                    
-                    log.info("Sent event: city={}, type={} to partition: {} with offset: {} (latency: {}ms)",
-                            event.getCity(),
-                            event.getEventType(),
-                            result.getRecordMetadata().partition(),
-                            result.getRecordMetadata().offset(),
-                            latencyMs);
-                    
-                    // Log metrics every 100 messages
-                    if (successCount.sum() % 100 == 0) {
-                        logMetrics();
-                    }
-                } else {
-                    // Update failure metrics
-                    failureCount.increment();
-                    log.error("Failed to send event: city={}, type={} (latency: {}ms)", 
-                            event.getCity(), event.getEventType(), latencyMs, ex);
+                log.debug("Sent event: city={}, type={} to partition: {} with offset: {} (latency: {}ms)",
+                        event.getCity(),
+                        event.getEventType(),
+                        result.getRecordMetadata().partition(),
+                        result.getRecordMetadata().offset(),
+                        latencyMs);
+                
+                // Log metrics every 100 messages
+                if (successCount.sum() % 100 == 0) {
                     logMetrics();
                 }
-            });
-        } catch (JsonProcessingException e) {
-            failureCount.increment();
-            log.error("Error serializing event: city={}", event.getCity(), e);
-        }
+            } else {
+                // Update failure metrics
+                failureCount.increment();
+                log.error("Failed to send event: city={}, type={} (latency: {}ms)", 
+                        event.getCity(), event.getEventType(), latencyMs, ex);
+                logMetrics();
+            }
+        });
+    }
+
+    private void recordPartitionSend(int partition) {
+        partitionSendCounts
+            .computeIfAbsent(partition, p -> meterRegistry.counter(
+                "citystream.producer.partition.sends", "partition", String.valueOf(p)))
+            .increment();
+    }
+
+    private Map<Integer, Long> getPartitionSendCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        partitionSendCounts.forEach((partition, counter) -> counts.put(partition, (long) counter.count()));
+        return counts;
+    }
+
+    private int getInFlightCount() {
+        return maxInFlight - inFlightPermits.availablePermits();
     }
 
     private void updateLatencyMetrics(long latencyMs) {
@@ -117,6 +312,9 @@ public class KafkaProducerService {
                 minLatencyMs.get() == Long.MAX_VALUE ? 0 : minLatencyMs.get(), 
                 maxLatencyMs.get());
         log.info("Throughput: {:.2f} events/sec | Uptime: {}s", eventsPerSecond, uptimeSeconds);
+        LatencyTracker.LatencySnapshot lastMinute = latencyTracker.getSnapshots().get("1m");
+        log.info("Latency (1m) - p50: {}ms | p99: {}ms | p99.9: {}ms | Max: {}ms",
+                lastMinute.p50Ms, lastMinute.p99Ms, lastMinute.p999Ms, lastMinute.maxMs);
         log.info("=======================");
     }
 
@@ -140,7 +338,14 @@ public class KafkaProducerService {
             minLatencyMs.get() == Long.MAX_VALUE ? 0 : minLatencyMs.get(),
             maxLatencyMs.get(),
             eventsPerSecond,
-            uptimeSeconds
+            uptimeSeconds,
+            latencyTracker.getSnapshots(),
+            getInFlightCount(),
+            pendingEvents.size(),
+            TimeUnit.NANOSECONDS.toMillis(throttleNanos.sum()),
+            rejectedCount.sum(),
+            droppedCount.sum(),
+            getPartitionSendCounts()
         );
     }
 
@@ -155,10 +360,24 @@ public class KafkaProducerService {
         public final long maxLatencyMs;
         public final double eventsPerSecond;
         public final long uptimeSeconds;
+        // p50/p90/p99/p99.9/max per rolling window (1m, 5m, 15m)
+        public final Map<String, LatencyTracker.LatencySnapshot> latencyPercentiles;
+        // Backpressure
+        public final int inFlight;
+        public final int pending;
+        public final long throttleTimeMs;
+        public final long rejectedCount;
+        public final long droppedCount;
+        // Acknowledged sends per partition, to make key skew visible
+        public final Map<Integer, Long> partitionSendCounts;
 
         public ProducerMetrics(long totalEvents, long successCount, long failureCount,
                              double successRate, double avgLatencyMs, long minLatencyMs,
-                             long maxLatencyMs, double eventsPerSecond, long uptimeSeconds) {
+                             long maxLatencyMs, double eventsPerSecond, long uptimeSeconds,
+                             Map<String, LatencyTracker.LatencySnapshot> latencyPercentiles,
+                             int inFlight, int pending, long throttleTimeMs,
+                             long rejectedCount, long droppedCount,
+                             Map<Integer, Long> partitionSendCounts) {
             this.totalEvents = totalEvents;
             this.successCount = successCount;
             this.failureCount = failureCount;
@@ -168,6 +387,13 @@ public class KafkaProducerService {
             this.maxLatencyMs = maxLatencyMs;
             this.eventsPerSecond = eventsPerSecond;
             this.uptimeSeconds = uptimeSeconds;
+            this.latencyPercentiles = latencyPercentiles;
+            this.inFlight = inFlight;
+            this.pending = pending;
+            this.throttleTimeMs = throttleTimeMs;
+            this.rejectedCount = rejectedCount;
+            this.droppedCount = droppedCount;
+            this.partitionSendCounts = partitionSendCounts;
         }
     }
 }
\ No newline at end of file
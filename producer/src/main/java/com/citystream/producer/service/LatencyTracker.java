@@ -0,0 +1,155 @@
+package com.citystream.producer.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Send latency percentiles over rolling 1m/5m/15m windows.
+ *
+ * Latencies are recorded into a lock-free HdrHistogram Recorder (microsecond
+ * resolution, 3 significant digits). Every interval the recorder is swapped
+ * for a fresh histogram and the closed interval is kept in a ring, from which
+ * the window snapshots are rebuilt. The same samples feed a Micrometer timer,
+ * and the window percentiles are published as gauges for Prometheus.
+ */
+@Component
+public class LatencyTracker {
+
+    static final long INTERVAL_MS = 10_000;
+
+    private static final Map<String, Long> WINDOWS = new LinkedHashMap<>();
+    static {
+        WINDOWS.put("1m", TimeUnit.MINUTES.toMillis(1));
+        WINDOWS.put("5m", TimeUnit.MINUTES.toMillis(5));
+        WINDOWS.put("15m", TimeUnit.MINUTES.toMillis(15));
+    }
+
+    private static final long MAX_WINDOW_MS = TimeUnit.MINUTES.toMillis(15);
+
+    private final Recorder recorder = new Recorder(3);
+    private final Timer sendTimer;
+
+    // Closed intervals, oldest first; guarded by this
+    private final Deque<Histogram> intervals = new ArrayDeque<>();
+    private volatile Map<String, LatencySnapshot> snapshots = emptySnapshots();
+
+    public LatencyTracker(MeterRegistry meterRegistry) {
+        this.sendTimer = Timer.builder("citystream.producer.send.latency")
+            .description("Time from KafkaTemplate.send() to broker acknowledgement")
+            .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+
+        for (String window : WINDOWS.keySet()) {
+            registerWindowGauge(meterRegistry, window, "0.5", s -> s.p50Ms);
+            registerWindowGauge(meterRegistry, window, "0.9", s -> s.p90Ms);
+            registerWindowGauge(meterRegistry, window, "0.99", s -> s.p99Ms);
+            registerWindowGauge(meterRegistry, window, "0.999", s -> s.p999Ms);
+            registerWindowGauge(meterRegistry, window, "max", s -> s.maxMs);
+        }
+    }
+
+    /**
+     * Record one send latency measured with System.nanoTime()
+     */
+    public void record(long latencyNanos) {
+        recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        sendTimer.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Latest window snapshots keyed by window name (1m, 5m, 15m)
+     */
+    public Map<String, LatencySnapshot> getSnapshots() {
+        return snapshots;
+    }
+
+    @Scheduled(fixedRate = INTERVAL_MS)
+    public synchronized void rotate() {
+        long now = System.currentTimeMillis();
+        intervals.addLast(recorder.getIntervalHistogram());
+        while (!intervals.isEmpty() && intervals.peekFirst().getEndTimeStamp() < now - MAX_WINDOW_MS) {
+            intervals.removeFirst();
+        }
+
+        Map<String, LatencySnapshot> updated = new LinkedHashMap<>();
+        WINDOWS.forEach((window, lengthMs) -> {
+            Histogram merged = new Histogram(3);
+            for (Histogram interval : intervals) {
+                if (interval.getEndTimeStamp() >= now - lengthMs) {
+                    merged.add(interval);
+                }
+            }
+            updated.put(window, LatencySnapshot.of(merged));
+        });
+        snapshots = Collections.unmodifiableMap(updated);
+    }
+
+    private void registerWindowGauge(MeterRegistry meterRegistry, String window, String quantile,
+                                     ToDoubleFunction<LatencySnapshot> value) {
+        Gauge.builder("citystream.producer.send.latency.window", this,
+                tracker -> value.applyAsDouble(tracker.snapshots.get(window)))
+            .description("Send latency percentile over a rolling window")
+            .baseUnit("milliseconds")
+            .tag("window", window)
+            .tag("quantile", quantile)
+            .register(meterRegistry);
+    }
+
+    private static Map<String, LatencySnapshot> emptySnapshots() {
+        Map<String, LatencySnapshot> empty = new LinkedHashMap<>();
+        WINDOWS.keySet().forEach(window -> empty.put(window, LatencySnapshot.of(new Histogram(3))));
+        return Collections.unmodifiableMap(empty);
+    }
+
+    // Percentile snapshot for one window, in milliseconds
+    public static class LatencySnapshot {
+        public final long count;
+        public final double p50Ms;
+        public final double p90Ms;
+        public final double p99Ms;
+        public final double p999Ms;
+        public final double maxMs;
+
+        public LatencySnapshot(long count, double p50Ms, double p90Ms, double p99Ms,
+                               double p999Ms, double maxMs) {
+            this.count = count;
+            this.p50Ms = p50Ms;
+            this.p90Ms = p90Ms;
+            this.p99Ms = p99Ms;
+            this.p999Ms = p999Ms;
+            this.maxMs = maxMs;
+        }
+
+        static LatencySnapshot of(Histogram histogram) {
+            if (histogram.getTotalCount() == 0) {
+                return new LatencySnapshot(0, 0, 0, 0, 0, 0);
+            }
+            return new LatencySnapshot(
+                histogram.getTotalCount(),
+                toMs(histogram.getValueAtPercentile(50.0)),
+                toMs(histogram.getValueAtPercentile(90.0)),
+                toMs(histogram.getValueAtPercentile(99.0)),
+                toMs(histogram.getValueAtPercentile(99.9)),
+                toMs(histogram.getMaxValue())
+            );
+        }
+
+        private static double toMs(long micros) {
+            return micros / 1000.0;
+        }
+    }
+}
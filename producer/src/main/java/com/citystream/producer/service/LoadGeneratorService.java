@@ -0,0 +1,261 @@
+package com.citystream.producer.service;
+
+import com.citystream.producer.model.CityEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * High-rate load generation mode (generator.load.enabled=true).
+ *
+ * The target rate is split evenly across generator threads. Each thread
+ * computes the due time of its k-th event from the start time and the rate
+ * curve (linear ramp, then constant), so pacing never drifts: a thread that
+ * falls behind sends immediately until it catches up instead of shifting
+ * the rest of the schedule. Each thread draws from its own SplittableRandom.
+ * Events the producer rejects (FAIL_FAST backpressure) are counted apart from
+ * accepted ones, so the achieved rate only reflects events handed to Kafka.
+ */
+@Service
+public class LoadGeneratorService {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGeneratorService.class);
+
+    @Autowired
+    private KafkaProducerService producerService;
+
+    @Value("${generator.load.enabled:false}")
+    private boolean enabled;
+
+    @Value("${generator.load.target-rate:1000}")
+    private double targetRate;
+
+    @Value("${generator.load.threads:4}")
+    private int threadCount;
+
+    // 0 runs until shutdown
+    @Value("${generator.load.duration-seconds:0}")
+    private long durationSeconds;
+
+    @Value("${generator.load.ramp-seconds:10}")
+    private long rampSeconds;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private final AtomicInteger activeThreads = new AtomicInteger();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+    private volatile long startNanos;
+
+    // Sampled once per second
+    private long lastSampleAccepted;
+    private long lastSampleRejected;
+    private long lastSampleNanos;
+    private volatile double achievedRate;
+    private volatile double rejectedRate;
+
+    public LoadGeneratorService(MeterRegistry meterRegistry) {
+        Gauge.builder("citystream.producer.load.target.rate", this, LoadGeneratorService::currentTargetRate)
+            .description("Scheduled event rate, including ramp")
+            .baseUnit("events/s")
+            .register(meterRegistry);
+        Gauge.builder("citystream.producer.load.achieved.rate", this, service -> service.achievedRate)
+            .description("Events accepted by the producer over the last second")
+            .baseUnit("events/s")
+            .register(meterRegistry);
+        Gauge.builder("citystream.producer.load.rejected.rate", this, service -> service.rejectedRate)
+            .description("Events rejected by producer backpressure over the last second")
+            .baseUnit("events/s")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("generator.load.threads must be positive, got " + threadCount);
+        }
+        if (!(targetRate > 0) || Double.isInfinite(targetRate)) {
+            throw new IllegalArgumentException("generator.load.target-rate must be positive, got " + targetRate);
+        }
+        if (rampSeconds < 0 || durationSeconds < 0) {
+            throw new IllegalArgumentException("generator.load.ramp-seconds and duration-seconds must not be negative");
+        }
+
+        log.info("Starting load generator: target={} events/s, threads={}, duration={}s, ramp={}s",
+                targetRate, threadCount, durationSeconds, rampSeconds);
+
+        running = true;
+        startNanos = System.nanoTime();
+        lastSampleNanos = startNanos;
+        SplittableRandom root = new SplittableRandom();
+        double perThreadRate = targetRate / threadCount;
+        activeThreads.set(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            SplittableRandom random = root.split();
+            Thread thread = new Thread(() -> generate(perThreadRate, random), "load-generator-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        threads.forEach(LockSupport::unpark);
+        threads.clear();
+        log.info("Load generator stopped after {} events accepted, {} rejected", accepted.sum(), rejected.sum());
+    }
+
+    private void generate(double rate, SplittableRandom random) {
+        long endNanos = durationSeconds > 0
+                ? startNanos + TimeUnit.SECONDS.toNanos(durationSeconds)
+                : Long.MAX_VALUE;
+
+        for (long k = 0; running; k++) {
+            long dueNanos = startNanos + offsetNanos(k, rate);
+            if (dueNanos - endNanos >= 0) {
+                break;
+            }
+
+            long now;
+            while ((now = System.nanoTime()) - dueNanos < 0 && running) {
+                LockSupport.parkNanos(dueNanos - now);
+            }
+            if (!running) {
+                break;
+            }
+            maxLagNanos.accumulateAndGet(now - dueNanos, Math::max);
+
+            CityEvent event = EventGeneratorService.randomEvent(random);
+            if (producerService.sendEvent(event)) {
+                accepted.increment();
+            } else {
+                rejected.increment();
+            }
+        }
+
+        if (activeThreads.decrementAndGet() == 0 && running) {
+            running = false;
+            log.info("Load generator finished its configured duration of {}s ({} events accepted, {} rejected)",
+                    durationSeconds, accepted.sum(), rejected.sum());
+        }
+    }
+
+    /**
+     * Time from start at which the k-th event of a thread is due. The rate rises
+     * linearly to {@code rate} over the ramp, so k(t) = rate*t^2/(2*ramp) during
+     * the ramp and rate*ramp/2 + rate*(t - ramp) afterwards.
+     */
+    private long offsetNanos(long k, double rate) {
+        double ramp = rampSeconds;
+        double rampEvents = rate * ramp / 2;
+        double seconds = k < rampEvents
+                ? Math.sqrt(2 * ramp * k / rate)
+                : ramp + (k - rampEvents) / rate;
+        return (long) (seconds * 1_000_000_000L);
+    }
+
+    private double currentTargetRate() {
+        if (!running) {
+            return 0;
+        }
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        return rampSeconds > 0 && elapsed < rampSeconds
+                ? targetRate * elapsed / rampSeconds
+                : targetRate;
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public synchronized void sampleRate() {
+        if (!running) {
+            achievedRate = 0;
+            rejectedRate = 0;
+            return;
+        }
+        long now = System.nanoTime();
+        long acceptedNow = accepted.sum();
+        long rejectedNow = rejected.sum();
+        double seconds = (now - lastSampleNanos) / 1e9;
+        achievedRate = (acceptedNow - lastSampleAccepted) / seconds;
+        rejectedRate = (rejectedNow - lastSampleRejected) / seconds;
+        lastSampleAccepted = acceptedNow;
+        lastSampleRejected = rejectedNow;
+        lastSampleNanos = now;
+    }
+
+    public LoadMetrics getMetrics() {
+        long elapsedNanos = running ? System.nanoTime() - startNanos : 0;
+        long total = accepted.sum();
+        return new LoadMetrics(
+            running,
+            threadCount,
+            targetRate,
+            currentTargetRate(),
+            achievedRate,
+            rejectedRate,
+            elapsedNanos > 0 ? total / (elapsedNanos / 1e9) : 0,
+            total,
+            rejected.sum(),
+            TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()),
+            TimeUnit.NANOSECONDS.toSeconds(elapsedNanos)
+        );
+    }
+
+    // Load generator metrics data class
+    public static class LoadMetrics {
+        public final boolean running;
+        public final int threads;
+        public final double targetRate;
+        public final double currentTargetRate;
+        // Accepted events only; rejected ones are reported separately
+        public final double achievedRate;
+        public final double rejectedRate;
+        public final double averageRate;
+        public final long eventsAccepted;
+        public final long eventsRejected;
+        public final long maxScheduleLagMs;
+        public final long elapsedSeconds;
+
+        public LoadMetrics(boolean running, int threads, double targetRate, double currentTargetRate,
+                           double achievedRate, double rejectedRate, double averageRate,
+                           long eventsAccepted, long eventsRejected, long maxScheduleLagMs, long elapsedSeconds) {
+            this.running = running;
+            this.threads = threads;
+            this.targetRate = targetRate;
+            this.currentTargetRate = currentTargetRate;
+            this.achievedRate = achievedRate;
+            this.rejectedRate = rejectedRate;
+            this.averageRate = averageRate;
+            this.eventsAccepted = eventsAccepted;
+            this.eventsRejected = eventsRejected;
+            this.maxScheduleLagMs = maxScheduleLagMs;
+            this.elapsedSeconds = elapsedSeconds;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.citystream.producer.serialization;
+
+import com.citystream.producer.model.CityEvent;
+import com.citystream.producer.service.EventGeneratorService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous send path (ObjectMapper -> String -> StringSerializer)
+ * with CityEventEncoder. Run with the GC profiler to see bytes allocated per event:
+ *
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.citystream.producer.serialization.CityEventEncoderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CityEventEncoderBenchmark {
+
+    private ObjectMapper objectMapper;
+    private StringSerializer stringSerializer;
+    private CityEventEncoder encoder;
+    private CityEvent event;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        stringSerializer = new StringSerializer();
+        encoder = new CityEventEncoder(EventGeneratorService.vocabulary());
+        event = new CityEvent("NYC", "incident", "critical",
+            "critical incident reported, emergency services notified");
+
+        // Both paths must put identical bytes on the wire
+        byte[] expected = jacksonToBytes();
+        byte[] actual = encoder.encode(event);
+        if (!Arrays.equals(expected, actual)) {
+            throw new IllegalStateException("Encoder output differs from Jackson: "
+                + new String(expected) + " vs " + new String(actual));
+        }
+    }
+
+    @Benchmark
+    public byte[] jacksonStringPath() throws JsonProcessingException {
+        return jacksonToBytes();
+    }
+
+    @Benchmark
+    public byte[] cityEventEncoder() {
+        return encoder.encode(event);
+    }
+
+    private byte[] jacksonToBytes() throws JsonProcessingException {
+        String json = objectMapper.writeValueAsString(event);
+        return stringSerializer.serialize("city-events", json);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(CityEventEncoderBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.citystream.producer.serialization;
+
+import com.citystream.producer.model.CityEvent;
+import com.citystream.producer.service.EventGeneratorService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * CityEventEncoder must put the same bytes on the wire as the previous path,
+ * ObjectMapper to a String and then UTF-8 (what StringSerializer does).
+ */
+class CityEventEncoderTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 3, 7, 9, 5, 1);
+
+    private ObjectMapper objectMapper;
+    private CityEventEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        encoder = new CityEventEncoder(EventGeneratorService.vocabulary());
+    }
+
+    @Test
+    void generatedVocabulary() throws Exception {
+        for (String city : new String[] {"SF", "Chicago"}) {
+            for (String eventType : new String[] {"traffic", "construction"}) {
+                for (String severity : new String[] {"low", "critical"}) {
+                    assertSameAsJackson(event(city, eventType, severity, severity + " " + eventType));
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "",
+        "say \"hi\"",
+        "C:\\temp\\new",
+        "tab\there\nnew line\r\n",
+        "\b\f\u0000\u0001\u001f\u007f",
+        "caf\u00e9 na\u00efve \u00a9",
+        "\u6771\u4eac \u20ac \u0915",
+        "emoji \ud83d\ude97 and \ud834\udd1e",
+        "lone high \ud83d end",
+        "lone low \ude97 end",
+        "\u2028\u2029"
+    })
+    void escapesLikeJackson(String text) throws Exception {
+        assertSameAsJackson(event("NYC", "incident", "high", text));
+        // Unknown values take the escaping path instead of the pre-encoded one
+        assertSameAsJackson(event(text, text, text, text));
+    }
+
+    @Test
+    void nullFields() throws Exception {
+        CityEvent event = event(null, null, null, null);
+        event.setTimestamp(null);
+        assertSameAsJackson(event);
+    }
+
+    @Test
+    void longDescriptionGrowsBuffer() throws Exception {
+        assertSameAsJackson(event("LA", "weather", "medium", "\"\u00e9\ud83d\ude97".repeat(500)));
+        // The thread's buffer is reused after growing
+        assertSameAsJackson(event("LA", "weather", "medium", "short"));
+    }
+
+    private static CityEvent event(String city, String eventType, String severity, String description) {
+        CityEvent event = new CityEvent(city, eventType, severity, description);
+        event.setTimestamp(TIMESTAMP);
+        return event;
+    }
+
+    private void assertSameAsJackson(CityEvent event) throws Exception {
+        byte[] expected = objectMapper.writeValueAsString(event).getBytes(StandardCharsets.UTF_8);
+        byte[] actual = encoder.encode(event);
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+        assertArrayEquals(expected, actual);
+    }
+}
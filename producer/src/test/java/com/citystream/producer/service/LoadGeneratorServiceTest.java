@@ -0,0 +1,75 @@
+package com.citystream.producer.service;
+
+import com.citystream.producer.model.CityEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Events rejected by FAIL_FAST backpressure must not count towards the
+ * achieved rate, and a config that cannot be paced must fail at start.
+ */
+class LoadGeneratorServiceTest {
+
+    private KafkaProducerService producerService;
+    private LoadGeneratorService generator;
+
+    @BeforeEach
+    void setUp() {
+        producerService = mock(KafkaProducerService.class);
+        generator = new LoadGeneratorService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(generator, "producerService", producerService);
+        ReflectionTestUtils.setField(generator, "enabled", true);
+        ReflectionTestUtils.setField(generator, "targetRate", 200.0);
+        ReflectionTestUtils.setField(generator, "threadCount", 1);
+        ReflectionTestUtils.setField(generator, "durationSeconds", 1L);
+        ReflectionTestUtils.setField(generator, "rampSeconds", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        generator.stop();
+    }
+
+    @Test
+    void countsRejectedEventsApart() throws InterruptedException {
+        // Every other event finds no in-flight permit
+        AtomicLong sends = new AtomicLong();
+        when(producerService.sendEvent(any(CityEvent.class)))
+            .thenAnswer(invocation -> sends.incrementAndGet() % 2 == 0);
+
+        generator.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (generator.getMetrics().running && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        LoadGeneratorService.LoadMetrics metrics = generator.getMetrics();
+        assertFalse(metrics.running);
+        assertEquals(100, metrics.eventsAccepted);
+        assertEquals(100, metrics.eventsRejected);
+    }
+
+    @Test
+    void rejectsThreadCountThatCannotSplitTheRate() {
+        ReflectionTestUtils.setField(generator, "threadCount", 0);
+        assertThrows(IllegalArgumentException.class, generator::start);
+    }
+
+    @Test
+    void rejectsNonPositiveTargetRate() {
+        ReflectionTestUtils.setField(generator, "targetRate", 0.0);
+        assertThrows(IllegalArgumentException.class, generator::start);
+    }
+}
@@ -11,19 +11,53 @@ AWS_REGION=${AWS_REGION:-us-east-1}
 echo -e "\nUsing AWS Region: $AWS_REGION"
 
 # Table 1: Raw Events (partition key: event_id)
-echo -e "\n[1/3] Creating citystream-raw-events table..."
+# city-timestamp-index serves "newest events for a city" as a Query instead of a Scan
+echo -e "\n[1/4] Creating citystream-raw-events table..."
 aws dynamodb create-table \
     --table-name citystream-raw-events \
     --attribute-definitions \
         AttributeName=event_id,AttributeType=S \
         AttributeName=timestamp,AttributeType=S \
+        AttributeName=city,AttributeType=S \
     --key-schema \
         AttributeName=event_id,KeyType=HASH \
         AttributeName=timestamp,KeyType=RANGE \
     --billing-mode PAY_PER_REQUEST \
     --region $AWS_REGION \
     --tags Key=Project,Value=CityStream Key=Environment,Value=Development \
-    --stream-specification StreamEnabled=false
+    --stream-specification StreamEnabled=false \
+    --global-secondary-indexes \
+        "[
+            {
+                \"IndexName\": \"city-timestamp-index\",
+                \"KeySchema\": [
+                    {\"AttributeName\":\"city\",\"KeyType\":\"HASH\"},
+                    {\"AttributeName\":\"timestamp\",\"KeyType\":\"RANGE\"}
+                ],
+                \"Projection\": {\"ProjectionType\":\"ALL\"}
+            }
+        ]" || {
+    # Table already exists: add the index if it is missing
+    aws dynamodb update-table \
+        --table-name citystream-raw-events \
+        --attribute-definitions \
+            AttributeName=city,AttributeType=S \
+            AttributeName=timestamp,AttributeType=S \
+        --global-secondary-index-updates \
+            "[
+                {
+                    \"Create\": {
+                        \"IndexName\": \"city-timestamp-index\",
+                        \"KeySchema\": [
+                            {\"AttributeName\":\"city\",\"KeyType\":\"HASH\"},
+                            {\"AttributeName\":\"timestamp\",\"KeyType\":\"RANGE\"}
+                        ],
+                        \"Projection\": {\"ProjectionType\":\"ALL\"}
+                    }
+                }
+            ]" \
+        --region $AWS_REGION || true
+}
 
 # Enable TTL for automatic deletion after 30 days
 aws dynamodb update-time-to-live \
@@ -34,21 +68,56 @@ aws dynamodb update-time-to-live \
 echo "✓ citystream-raw-events created with TTL enabled"
 
 # Table 2: Aggregations (partition key: city#event_type#window_start)
-echo -e "\n[2/3] Creating citystream-aggregations table..."
+# city-window-index pages through a city's windows newest first for /aggregations
+echo -e "\n[2/4] Creating citystream-aggregations table..."
 aws dynamodb create-table \
     --table-name citystream-aggregations \
     --attribute-definitions \
         AttributeName=partition_key,AttributeType=S \
+        AttributeName=city,AttributeType=S \
+        AttributeName=window_start,AttributeType=S \
     --key-schema \
         AttributeName=partition_key,KeyType=HASH \
     --billing-mode PAY_PER_REQUEST \
     --region $AWS_REGION \
-    --tags Key=Project,Value=CityStream Key=Environment,Value=Development
+    --tags Key=Project,Value=CityStream Key=Environment,Value=Development \
+    --global-secondary-indexes \
+        "[
+            {
+                \"IndexName\": \"city-window-index\",
+                \"KeySchema\": [
+                    {\"AttributeName\":\"city\",\"KeyType\":\"HASH\"},
+                    {\"AttributeName\":\"window_start\",\"KeyType\":\"RANGE\"}
+                ],
+                \"Projection\": {\"ProjectionType\":\"ALL\"}
+            }
+        ]" || {
+    # Table already exists: add the index if it is missing
+    aws dynamodb update-table \
+        --table-name citystream-aggregations \
+        --attribute-definitions \
+            AttributeName=city,AttributeType=S \
+            AttributeName=window_start,AttributeType=S \
+        --global-secondary-index-updates \
+            "[
+                {
+                    \"Create\": {
+                        \"IndexName\": \"city-window-index\",
+                        \"KeySchema\": [
+                            {\"AttributeName\":\"city\",\"KeyType\":\"HASH\"},
+                            {\"AttributeName\":\"window_start\",\"KeyType\":\"RANGE\"}
+                        ],
+                        \"Projection\": {\"ProjectionType\":\"ALL\"}
+                    }
+                }
+            ]" \
+        --region $AWS_REGION || true
+}
 
 echo "✓ citystream-aggregations created"
 
 # Table 3: High-Severity Alerts (partition key: city, sort key: timestamp)
-echo -e "\n[3/3] Creating citystream-alerts table..."
+echo -e "\n[3/4] Creating citystream-alerts table..."
 aws dynamodb create-table \
     --table-name citystream-alerts \
     --attribute-definitions \
@@ -78,11 +147,47 @@ aws dynamodb create-table \
 
 echo "✓ citystream-alerts created"
 
+# Table 4: Running totals (partition key: city, sort key: TOTAL or TYPE#<event_type>)
+# scope-city-index lists every city's TOTAL item for /cities
+# The #GLOBAL partition holds all-city counters for /stats; its per-minute items expire via TTL
+echo -e "\n[4/4] Creating citystream-city-totals table..."
+aws dynamodb create-table \
+    --table-name citystream-city-totals \
+    --attribute-definitions \
+        AttributeName=city,AttributeType=S \
+        AttributeName=scope,AttributeType=S \
+    --key-schema \
+        AttributeName=city,KeyType=HASH \
+        AttributeName=scope,KeyType=RANGE \
+    --billing-mode PAY_PER_REQUEST \
+    --region $AWS_REGION \
+    --tags Key=Project,Value=CityStream Key=Environment,Value=Development \
+    --global-secondary-indexes \
+        "[
+            {
+                \"IndexName\": \"scope-city-index\",
+                \"KeySchema\": [
+                    {\"AttributeName\":\"scope\",\"KeyType\":\"HASH\"},
+                    {\"AttributeName\":\"city\",\"KeyType\":\"RANGE\"}
+                ],
+                \"Projection\": {\"ProjectionType\":\"ALL\"}
+            }
+        ]" || true
+
+aws dynamodb wait table-exists --table-name citystream-city-totals --region $AWS_REGION
+aws dynamodb update-time-to-live \
+    --table-name citystream-city-totals \
+    --time-to-live-specification "Enabled=true, AttributeName=ttl" \
+    --region $AWS_REGION || true
+
+echo "✓ citystream-city-totals created with TTL enabled"
+
 # Wait for tables to become active
 echo -e "\nWaiting for tables to become ACTIVE..."
 aws dynamodb wait table-exists --table-name citystream-raw-events --region $AWS_REGION
 aws dynamodb wait table-exists --table-name citystream-aggregations --region $AWS_REGION
 aws dynamodb wait table-exists --table-name citystream-alerts --region $AWS_REGION
+aws dynamodb wait table-exists --table-name citystream-city-totals --region $AWS_REGION
 
 echo -e "\n======================================"
 echo "✓ All DynamoDB tables created successfully!"
@@ -101,4 +206,5 @@ echo "  • Expected cost for this demo: < $1/day"
 echo -e "\nTo delete tables later:"
 echo "  aws dynamodb delete-table --table-name citystream-raw-events --region $AWS_REGION"
 echo "  aws dynamodb delete-table --table-name citystream-aggregations --region $AWS_REGION"
-echo "  aws dynamodb delete-table --table-name citystream-alerts --region $AWS_REGION"
\ No newline at end of file
+echo "  aws dynamodb delete-table --table-name citystream-alerts --region $AWS_REGION"
+echo "  aws dynamodb delete-table --table-name citystream-city-totals --region $AWS_REGION"
\ No newline at end of file